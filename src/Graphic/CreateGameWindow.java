@@ -1,8 +1,10 @@
 package Graphic;
 
+import Network.Parity;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
@@ -26,6 +28,8 @@ public class CreateGameWindow {
     private static float deadFoodProb = 0.1f;
     private static int pingDelay = 10;
     private static int nodeTimeout = 5000;
+    private static int fecGroupSize = 0;
+    private static boolean catchUpTicks = false;
 
     private static TextField nameInput;
     private static TextField widthInput;
@@ -36,6 +40,8 @@ public class CreateGameWindow {
     private static TextField deadFoodProbInput;
     private static TextField pingDelayInput;
     private static TextField nodeTimeoutInput;
+    private static TextField fecGroupSizeInput;
+    private static CheckBox catchUpTicksInput;
 
     public static boolean created;
 
@@ -121,6 +127,17 @@ public class CreateGameWindow {
         nodeTimeoutInput.setText("5000");
         GridPane.setConstraints(nodeTimeoutInput, 0, 17);
 
+        Label fecGroupSizeLabel = new Label("States per parity packet (0 - off, 2 - 16):");
+        GridPane.setConstraints(fecGroupSizeLabel, 0, 18);
+
+        fecGroupSizeInput = new TextField();
+        fecGroupSizeInput.setMaxWidth(playerInterfaceWidth);
+        fecGroupSizeInput.setText("0");
+        GridPane.setConstraints(fecGroupSizeInput, 0, 19);
+
+        catchUpTicksInput = new CheckBox("Catch up late ticks instead of skipping them");
+        GridPane.setConstraints(catchUpTicksInput, 0, 20);
+
         Button createButton = new Button("Create");
         VBox.setVgrow(createButton, Priority.ALWAYS);
         createButton.setMaxWidth(playerInterfaceWidth);
@@ -137,6 +154,8 @@ public class CreateGameWindow {
                 stateDelay = Integer.parseInt(stateDelayInput.getText());
                 pingDelay = Integer.parseInt(pingDelayInput.getText());
                 nodeTimeout = Integer.parseInt(nodeTimeoutInput.getText());
+                fecGroupSize = Integer.parseInt(fecGroupSizeInput.getText());
+                catchUpTicks = catchUpTicksInput.isSelected();
 
                 if (!checkInputData()) {
                     return;
@@ -151,7 +170,7 @@ public class CreateGameWindow {
 
             main.startGame();
         });
-        GridPane.setConstraints(createButton, 0, 18);
+        GridPane.setConstraints(createButton, 0, 21);
 
         Button backButton = new Button("Back To Main Menu");
 
@@ -163,7 +182,7 @@ public class CreateGameWindow {
             window.close();
             main.showMainMenu(primaryStage);
         });
-        GridPane.setConstraints(backButton, 0, 19);
+        GridPane.setConstraints(backButton, 0, 22);
 
         grid.setPadding(new Insets(sceneHeight / 10, 0, 0,
                 (sceneWidth - playerInterfaceWidth) / 2));
@@ -178,6 +197,8 @@ public class CreateGameWindow {
                 deadFoodProbLabel, deadFoodProbInput,
                 pingDelayLabel, pingDelayInput,
                 nodeTimeoutLabel, nodeTimeoutInput,
+                fecGroupSizeLabel, fecGroupSizeInput,
+                catchUpTicksInput,
                 createButton,
                 backButton
         );
@@ -197,7 +218,8 @@ public class CreateGameWindow {
                 deadFoodProb < 0 || deadFoodProb > 100 ||
                 stateDelay < 0 || stateDelay > 10000 ||
                 pingDelay < 0 || pingDelay > 10000 ||
-                nodeTimeout < 0 || nodeTimeout > 10000) {
+                nodeTimeout < 0 || nodeTimeout > 10000 ||
+                !Parity.isValidGroupSize(fecGroupSize)) {
             ErrorBox.display("Invalid data");
             return false;
         }
@@ -239,4 +261,12 @@ public class CreateGameWindow {
     public static int getNodeTimeout() {
         return nodeTimeout;
     }
+
+    public static int getFecGroupSize() {
+        return fecGroupSize;
+    }
+
+    public static boolean isCatchUpTicks() {
+        return catchUpTicks;
+    }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -16,17 +17,25 @@ import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import Network.AnnouncementSender;
+import Network.MessageExtensions;
+import Network.OutboundPacket;
+import Logic.GameSnapshot;
+import Logic.GameView;
+import Logic.PlayerInput;
 import Logic.Score;
+import Logic.SnakeSnapshot;
+import Logic.TickListener;
+import Logic.TickScheduler;
 import Protobuf.SnakesProto;
 import Network.NodeInfo;
 import Network.NetworkLogic;
-import Logic.Point;
-import Logic.Snake;
 import Logic.GameLogic;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class GameWindow {
+public class GameWindow implements GameView, TickListener {
     private Stage stage = new Stage();
 
     private GameLogic snakeGame;
@@ -37,6 +46,7 @@ public class GameWindow {
     private Scene scene;
 
     private TableView<Score> scores;
+    private Label stats;
 
     private int fieldUnitSize;
     public int mainPaneSpaces = 10;
@@ -44,7 +54,9 @@ public class GameWindow {
     private final int sceneWidth;
     private final int sceneHeight;
 
-    private Timer timer = new Timer();
+    private TickScheduler tickScheduler;
+    private volatile GameSnapshot frame;
+    private final AtomicBoolean repaintScheduled = new AtomicBoolean(false);
     private final NetworkLogic messageManager;
 
     private SnakesProto.NodeRole nodeRole;
@@ -57,8 +69,10 @@ public class GameWindow {
         this.nodeRole = nodeRole;
         this.gameConfig = gameConfig;
 
-        snakeGame = new GameLogic(gameConfig, this, nodeRole);
-        messageManager = snakeGame.getMessageManager();
+        snakeGame = new GameLogic(gameConfig, System.currentTimeMillis());
+        messageManager = new NetworkLogic(snakeGame, this, gameConfig, nodeRole);
+        snakeGame.addTickListener(messageManager);
+        snakeGame.addTickListener(this);
         messageManager.sendJoin(hostInfo, name);
 
         initFieldUnitSize();
@@ -74,8 +88,10 @@ public class GameWindow {
         this.nodeRole = nodeRole;
         this.gameConfig = gameConfig;
 
-        snakeGame = new GameLogic(gameConfig, this, nodeRole);
-        messageManager = snakeGame.getMessageManager();
+        snakeGame = new GameLogic(gameConfig, System.currentTimeMillis());
+        messageManager = new NetworkLogic(snakeGame, this, gameConfig, nodeRole);
+        snakeGame.addTickListener(messageManager);
+        snakeGame.addTickListener(this);
 
         initFieldUnitSize();
         sceneWidth = fieldUnitSize * snakeGame.getWidth() + playerInterfaceWidth + mainPaneSpaces * 3;
@@ -120,30 +136,25 @@ public class GameWindow {
         exitButton.setFocusTraversable(false);
         exitButton.setOnAction(actionEvent -> messageManager.safeExit());
 
-        draw();
-
-        playerInterface.getChildren().addAll(scores, becameViewerButton, exitButton);
-
-        timer = new Timer();
-        timer.scheduleAtFixedRate(
-                new TimerTask() {
-                    @Override
-                    public void run() {
-                        Platform.runLater(() ->
-                        {
-                            synchronized (snakeGame) {
-                                if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                                    snakeGame.moveSnakes();
-                                    messageManager.sendState();
-
-                                    repaint();
-                                }
-                            }
-                        });
-                    }
-                },
-                0,
-                gameConfig.getStateDelayMs());
+        frame = snakeGame.getSnapshot();
+        draw(frame);
+
+        stats = new Label();
+        stats.setMaxWidth(playerInterfaceWidth);
+        stats.setWrapText(true);
+
+        playerInterface.getChildren().addAll(scores, becameViewerButton, exitButton, stats);
+
+        TickScheduler.OverrunPolicy overrunPolicy =
+                (MessageExtensions.getVarint(gameConfig, MessageExtensions.TICK_CATCH_UP) != 0)
+                        ? TickScheduler.OverrunPolicy.CATCH_UP : TickScheduler.OverrunPolicy.SKIP;
+
+        tickScheduler = new TickScheduler(() -> {
+            if (nodeRole == SnakesProto.NodeRole.MASTER) {
+                snakeGame.tick();
+            }
+        }, gameConfig.getStateDelayMs(), overrunPolicy);
+        tickScheduler.start();
 
         stage.setOnCloseRequest(windowEvent -> terminate());
 
@@ -163,56 +174,97 @@ public class GameWindow {
             scene.setOnKeyPressed(keyEvent ->
             {
                 if (keyEvent.getCode() == KeyCode.LEFT || keyEvent.getCode() == KeyCode.A) {
-                    if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                        snakeGame.changeSnakeDir(playerID, SnakesProto.Direction.LEFT);
-                    } else if (nodeRole != SnakesProto.NodeRole.VIEWER) {
-                        messageManager.sendSteer(playerID, SnakesProto.Direction.LEFT);
-                    }
+                    steer(SnakesProto.Direction.LEFT);
                 } else if (keyEvent.getCode() == KeyCode.RIGHT || keyEvent.getCode() == KeyCode.D) {
-                    if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                        snakeGame.changeSnakeDir(playerID, SnakesProto.Direction.RIGHT );
-                    } else if (nodeRole != SnakesProto.NodeRole.VIEWER) {
-                        messageManager.sendSteer(playerID, SnakesProto.Direction.RIGHT);
-                    }
+                    steer(SnakesProto.Direction.RIGHT);
                 } else if (keyEvent.getCode() == KeyCode.UP || keyEvent.getCode() == KeyCode.W) {
-                    if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                        snakeGame.changeSnakeDir(playerID, SnakesProto.Direction.UP);
-                    } else if (nodeRole != SnakesProto.NodeRole.VIEWER) {
-                        messageManager.sendSteer(playerID, SnakesProto.Direction.UP);
-                    }
+                    steer(SnakesProto.Direction.UP);
                 } else if (keyEvent.getCode() == KeyCode.DOWN || keyEvent.getCode() == KeyCode.S) {
-                    if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                        snakeGame.changeSnakeDir(playerID, SnakesProto.Direction.DOWN);
-                    } else if (nodeRole != SnakesProto.NodeRole.VIEWER) {
-                        messageManager.sendSteer(playerID, SnakesProto.Direction.DOWN);
-                    }
+                    steer(SnakesProto.Direction.DOWN);
                 }
             });
         } catch (NullPointerException ignored) {
         }
     }
 
+    private void steer(SnakesProto.Direction direction) {
+        if (nodeRole == SnakesProto.NodeRole.VIEWER) return;
+
+        PlayerInput input = (nodeRole == SnakesProto.NodeRole.MASTER) ? snakeGame : messageManager;
+        input.steer(playerID, direction);
+    }
+
+    @Override
+    public void onTick(GameSnapshot snapshot) {
+        frame = snapshot;
+        if (repaintScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                repaintScheduled.set(false);
+                repaint();
+            });
+        }
+    }
+
     public void repaint() {
-        synchronized (snakeGame) {
-            draw();
-            updateScores();
-            if (snakeGame.isGameOver()) {
-                terminate();
-            }
+        GameSnapshot snapshot = frame;
+
+        draw(snapshot);
+        updateScores(snapshot);
+        updateStats();
+        if (snapshot.isGameOver()) {
+            terminate();
         }
     }
 
+    @Override
+    public void showError(String error) {
+        Platform.runLater(() -> ErrorBox.display(error));
+    }
+
+    @Override
     public void terminate() {
         messageManager.disableMessageManager();
-        timer.cancel();
+        if (tickScheduler != null) {
+            tickScheduler.stop();
+        }
         discoverer.closeSender();
         Platform.runLater(() -> stage.close());
     }
 
-    private void draw() {
+    private void updateStats() {
+        StringBuilder text = new StringBuilder("Send queue (now/max):");
+        for (int priority = 0; priority < OutboundPacket.PRIORITY_LEVELS; ++priority) {
+            text.append(' ').append(OutboundPacket.getPriorityName(priority)).append(' ')
+                    .append(messageManager.getSendQueueDepth(priority)).append('/')
+                    .append(messageManager.getMaxSendQueueDepth(priority));
+        }
+        text.append("\nOversized messages dropped ").append(messageManager.getOversizedMessages())
+                .append("\nFEC recovered ").append(messageManager.getRecoveredStatePackets())
+                .append(", lost ").append(messageManager.getLostStatePackets());
+
+        if (messageManager.getLastFailoverTakeoverMs() >= 0) {
+            text.append("\nLast failover ").append(messageManager.getLastFailoverDetectionMs())
+                    .append(" ms detection, ").append(messageManager.getLastFailoverTakeoverMs())
+                    .append(" ms takeover");
+        }
+
+        if (nodeRole == SnakesProto.NodeRole.MASTER) {
+            text.append("\nTick ").append(TimeUnit.NANOSECONDS.toMillis(tickScheduler.getLastTickNanos()))
+                    .append(" ms (max ").append(TimeUnit.NANOSECONDS.toMillis(tickScheduler.getMaxTickNanos()))
+                    .append(" ms), lag max ").append(TimeUnit.NANOSECONDS.toMillis(tickScheduler.getMaxLagNanos()))
+                    .append(" ms\nOverruns ").append(tickScheduler.getOverrunCount())
+                    .append(" of ").append(tickScheduler.getTickCount())
+                    .append(", skipped ").append(tickScheduler.getSkippedTicks())
+                    .append("\nState rate reductions ").append(messageManager.getStateRateReductions());
+        }
+
+        stats.setText(text.toString());
+    }
+
+    private void draw(GameSnapshot snapshot) {
         drawField();
-        drawSnakes();
-        drawFood();
+        drawSnakes(snapshot);
+        drawFood(snapshot);
     }
 
     private void drawField() {
@@ -231,18 +283,18 @@ public class GameWindow {
         }
     }
 
-    public void drawFood() {
+    public void drawFood(GameSnapshot snapshot) {
         fieldGraphicsContext.setFill(Color.RED);
-        for (Point food : snakeGame.getFood()) {
-            fieldGraphicsContext.fillOval(food.getX() * fieldUnitSize, food.getY() * fieldUnitSize,
+        for (int i = 0; i < snapshot.getFoodCount(); ++i) {
+            fieldGraphicsContext.fillOval(snapshot.getFoodX(i) * fieldUnitSize, snapshot.getFoodY(i) * fieldUnitSize,
                     fieldUnitSize - 1, fieldUnitSize - 1);
         }
     }
 
-    public void drawSnakes() {
-        for (Map.Entry<Integer, Snake> entry : snakeGame.getSnakes().entrySet()) {
-            if (snakeGame.getPlayers().containsKey(entry.getKey())) {
-                if (entry.getKey() != playerID) {
+    public void drawSnakes(GameSnapshot snapshot) {
+        for (SnakeSnapshot snake : snapshot.getSnakes()) {
+            if (snapshot.getPlayers().containsKey(snake.getPlayerId())) {
+                if (snake.getPlayerId() != playerID) {
                     fieldGraphicsContext.setFill(Color.DARKORANGE);
                 } else {
                     fieldGraphicsContext.setFill(Color.DEEPPINK);
@@ -250,12 +302,12 @@ public class GameWindow {
             } else {
                 fieldGraphicsContext.setFill(Color.GRAY);
             }
-            fieldGraphicsContext.fillRect(entry.getValue().getSnakeBody().get(0).getX() * fieldUnitSize,
-                    entry.getValue().getSnakeBody().get(0).getY() * fieldUnitSize,
+            fieldGraphicsContext.fillRect(snake.getSegmentX(0) * fieldUnitSize,
+                    snake.getSegmentY(0) * fieldUnitSize,
                     fieldUnitSize - 1, fieldUnitSize - 1);
-            for (int body = 1; body != entry.getValue().getSnakeBody().size(); body++) {
-                if (snakeGame.getPlayers().containsKey(entry.getKey())) {
-                    if (entry.getKey() != playerID) {
+            for (int body = 1; body != snake.getSnakeSize(); body++) {
+                if (snapshot.getPlayers().containsKey(snake.getPlayerId())) {
+                    if (snake.getPlayerId() != playerID) {
                         fieldGraphicsContext.setFill(Color.SANDYBROWN);
                     } else {
                         fieldGraphicsContext.setFill(Color.HOTPINK);
@@ -263,8 +315,8 @@ public class GameWindow {
                 } else {
                     fieldGraphicsContext.setFill(Color.DARKGRAY);
                 }
-                fieldGraphicsContext.fillRect(entry.getValue().getSnakeBody().get(body).getX() * fieldUnitSize,
-                        entry.getValue().getSnakeBody().get(body).getY() * fieldUnitSize,
+                fieldGraphicsContext.fillRect(snake.getSegmentX(body) * fieldUnitSize,
+                        snake.getSegmentY(body) * fieldUnitSize,
                         fieldUnitSize - 2, fieldUnitSize - 2);
             }
 
@@ -331,19 +383,21 @@ public class GameWindow {
         }
     }
 
-    private void updateScores() {
+    private void updateScores(GameSnapshot snapshot) {
         ObservableList<Score> scoresNew = FXCollections.observableArrayList();
-        for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : snakeGame.getPlayers().entrySet()) {
+        for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : snapshot.getPlayers().entrySet()) {
             scoresNew.add(new Score(entry.getValue().getName(), entry.getValue().getScore()));
         }
 
         scores.setItems(scoresNew);
     }
 
+    @Override
     public void setPlayerID(int playerID) {
         this.playerID = playerID;
     }
 
+    @Override
     public void setNodeRole(SnakesProto.NodeRole nodeRole) {
         if (this.nodeRole == nodeRole) return;
 
@@ -5,6 +5,7 @@ import javafx.geometry.Insets;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.Priority;
 import Network.AnnouncementSender;
+import Network.MessageExtensions;
 import Logic.JoinInfo;
 import Protobuf.SnakesProto;
 import javafx.application.Application;
@@ -222,7 +223,7 @@ public class MainMenu extends Application {
     }
 
     private SnakesProto.GameConfig createGameConfig() {
-        return SnakesProto.GameConfig.newBuilder()
+        SnakesProto.GameConfig.Builder gameConfig = SnakesProto.GameConfig.newBuilder()
                 .setWidth(CreateGameWindow.getWidth())
                 .setHeight(CreateGameWindow.getHeight())
                 .setFoodStatic(CreateGameWindow.getFoodStatic())
@@ -230,8 +231,17 @@ public class MainMenu extends Application {
                 .setStateDelayMs(CreateGameWindow.getStateDelay())
                 .setDeadFoodProb(CreateGameWindow.getDeadFoodProb())
                 .setPingDelayMs(CreateGameWindow.getPingDelay())
-                .setNodeTimeoutMs(CreateGameWindow.getNodeTimeout())
-                .build();
+                .setNodeTimeoutMs(CreateGameWindow.getNodeTimeout());
+
+        if (CreateGameWindow.getFecGroupSize() > 0) {
+            MessageExtensions.setVarint(gameConfig, MessageExtensions.FEC_GROUP_SIZE,
+                    CreateGameWindow.getFecGroupSize());
+        }
+        if (CreateGameWindow.isCatchUpTicks()) {
+            MessageExtensions.setVarint(gameConfig, MessageExtensions.TICK_CATCH_UP, 1);
+        }
+
+        return gameConfig.build();
     }
 
     public void createMainMenu(Stage primaryStage) {
@@ -1,14 +1,15 @@
 package Logic;
 
 import Protobuf.SnakesProto;
-import Network.NodeInfo;
-import Network.NetworkLogic;
-import Graphic.GameWindow;
+import com.google.protobuf.ByteString;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public class GameLogic {
+public class GameLogic implements PlayerInput {
     private final static int SPAWN_AREA = 5;
+    private final static int HISTORY_SIZE = 32;
 
     private final int height;
     private final int width;
@@ -17,6 +18,7 @@ public class GameLogic {
     private int foodCount;
 
     private final ArrayList<Point> food = new ArrayList<>();
+    private final OccupancyGrid grid;
     private final HashMap<Integer, Snake> snakes = new HashMap<>();
     private final List<Integer> deadSnakes = new ArrayList<>();
 
@@ -25,26 +27,33 @@ public class GameLogic {
     private int playerIdCounter = 1;
     private int gameStateCounter = 0;
 
-    private final Random rand = new Random(System.currentTimeMillis());
+    private final Random rand;
 
     private final SnakesProto.GameConfig gameConfig;
-    private final NetworkLogic messageManager;
 
-    private final GameWindow gameWindow;
+    private final List<TickListener> tickListeners = new CopyOnWriteArrayList<>();
 
-    public GameLogic(SnakesProto.GameConfig gameConfig, GameWindow gameWindow, SnakesProto.NodeRole nodeRole) {
+    private volatile GameSnapshot frame;
+
+    private final GameSnapshot[] tickHistory = new GameSnapshot[HISTORY_SIZE];
+    private final SnakesProto.GameState[] stateHistory = new SnakesProto.GameState[HISTORY_SIZE];
+
+    public GameLogic(SnakesProto.GameConfig gameConfig, long seed) {
         this.gameConfig = gameConfig;
-        this.gameWindow = gameWindow;
-        this.messageManager = new NetworkLogic(this, gameConfig, nodeRole);
+        this.rand = new Random(seed);
 
         this.height = gameConfig.getHeight();
         this.width = gameConfig.getWidth();
 
+        grid = new OccupancyGrid(width, height);
+
         deadFoodProb = gameConfig.getDeadFoodProb();
 
         foodCount = generateFoodCount(0);
 
         generateFood(foodCount);
+
+        publish();
     }
 
     public int addPlayer(
@@ -72,6 +81,7 @@ public class GameLogic {
                         .build();
 
                 players.put(playerIdCounter, newPlayer);
+                publish();
 
                 return playerIdCounter;
             }
@@ -96,32 +106,19 @@ public class GameLogic {
                     .build();
 
             snakes.put(playerIdCounter, newSnake);
+            occupySnake(playerIdCounter, newSnake);
             movements.put(playerIdCounter, newSnake.getPrevMovement());
             players.put(playerIdCounter, newPlayer);
 
             int prevFoodCount = foodCount;
             foodCount = generateFoodCount(snakes.size());
             generateFood(foodCount - prevFoodCount);
+            publish();
 
             return playerIdCounter;
         }
     }
 
-    private Point getShiftByMovement(SnakesProto.Direction dir) {
-        switch (dir) {
-            case UP:
-                return new Point(0, -1);
-            case RIGHT:
-                return new Point(1, 0);
-            case DOWN:
-                return new Point(0, 1);
-            case LEFT:
-                return new Point(-1, 0);
-            default:
-                return new Point(0, 0);
-        }
-    }
-
     private void increasePlayerScore(int pi) {
         SnakesProto.GamePlayer prevPlayer = players.get(pi);
 
@@ -132,32 +129,9 @@ public class GameLogic {
         players.put(pi, prevPlayer.toBuilder().setScore(newScore).build());
     }
 
-    private boolean isCrashed(Integer pi, Snake snake) {
-        Point head = snake.getHead();
-
-        for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-            Snake s = entry.getValue();
-            int sPi = entry.getKey();
-            ArrayList<Point> sBody = s.getSnakeBody();
-            for (int i = (sPi == pi) ? 1 : 0; i < sBody.size(); ++i) {
-                if (head.equals(sBody.get(i))) {
-                    if (i != 0) {
-                        increasePlayerScore(sPi);
-                    }
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
-    private boolean isFood(int x, int y) {
-        for (Point p : food) {
-            if (p.getX() == x && p.getY() == y)
-                return true;
-        }
-        return false;
+    @Override
+    public void steer(int playerId, SnakesProto.Direction direction) {
+        changeSnakeDir(playerId, direction);
     }
 
     public void changeSnakeDir(Integer pi, SnakesProto.Direction dir) {
@@ -176,20 +150,115 @@ public class GameLogic {
         }
     }
 
-    public void moveSnakes() {
+    public StandbyReplica getStandbyReplica() {
         synchronized (this) {
-            for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-                moveSnake(entry.getKey(), entry.getValue(), movements.get(entry.getKey()));
+            Map<Integer, SnakesProto.Direction> pendingMovements = new HashMap<>();
+            for (Map.Entry<Integer, SnakesProto.Direction> entry : movements.entrySet()) {
+                Snake snake = snakes.get(entry.getKey());
+                if (snake != null && snake.getPrevMovement() != entry.getValue()) {
+                    pendingMovements.put(entry.getKey(), entry.getValue());
+                }
             }
 
+            return new StandbyReplica(gameStateCounter, pendingMovements);
+        }
+    }
+
+    public void applyStandbyReplica(StandbyReplica replica) {
+        synchronized (this) {
+            if (replica.getStateOrder() != gameStateCounter) return;
+
+            for (Map.Entry<Integer, SnakesProto.Direction> entry : replica.getPendingMovements().entrySet()) {
+                Snake snake = snakes.get(entry.getKey());
+                if (snake != null && snake.canMove(entry.getValue())) {
+                    movements.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    public void addTickListener(TickListener listener) {
+        tickListeners.add(listener);
+    }
+
+    public void removeTickListener(TickListener listener) {
+        tickListeners.remove(listener);
+    }
+
+    private void notifyListeners(GameSnapshot snapshot) {
+        for (TickListener listener : tickListeners) {
+            listener.onTick(snapshot);
+        }
+    }
+
+    public GameSnapshot tick() {
+        GameSnapshot snapshot;
+        synchronized (this) {
+            moveSnakes();
+            ++gameStateCounter;
+            snapshot = publish();
+            tickHistory[gameStateCounter % HISTORY_SIZE] = snapshot;
+        }
+
+        notifyListeners(snapshot);
+
+        return snapshot;
+    }
+
+    public GameSnapshot getSnapshot() {
+        return frame;
+    }
+
+    public GameSnapshot getTickSnapshot(int stateOrder) {
+        synchronized (this) {
+            GameSnapshot snapshot = tickHistory[stateOrder % HISTORY_SIZE];
+            return (snapshot != null && snapshot.getStateOrder() == stateOrder) ? snapshot : null;
+        }
+    }
+
+    private GameSnapshot publish() {
+        GameSnapshot backFrame = createSnapshot();
+        frame = backFrame;
+        return backFrame;
+    }
+
+    private GameSnapshot createSnapshot() {
+        int[] foodCells = new int[food.size()];
+        for (int i = 0; i < foodCells.length; ++i) {
+            Point p = food.get(i);
+            foodCells[i] = grid.getCell(p.getX(), p.getY());
+        }
+
+        List<SnakeSnapshot> snakeSnapshots = new ArrayList<>(snakes.size());
+        for (Snake snake : snakes.values()) {
+            snakeSnapshots.add(new SnakeSnapshot(snake, width));
+        }
+
+        return new GameSnapshot(gameStateCounter, width, height, foodCells, snakeSnapshots,
+                new HashMap<>(players), new ArrayList<>(deadSnakes));
+    }
+
+    private void moveSnakes() {
+        synchronized (this) {
             deadSnakes.clear();
 
             for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-                if (isCrashed(entry.getKey(), entry.getValue())) {
-                    deadSnakes.add(entry.getKey());
+                int pi = entry.getKey();
+                int tail = moveSnake(pi, entry.getValue(), movements.get(pi));
+
+                if (tail != -1) {
+                    grid.release(tail, pi);
                 }
             }
 
+            for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
+                placeHead(entry.getKey(), entry.getValue());
+            }
+
+            for (int i : deadSnakes) {
+                releaseSnake(i, snakes.get(i));
+            }
+
             for (int i : deadSnakes) {
                 killPlayer(i);
             }
@@ -198,29 +267,70 @@ public class GameLogic {
         }
     }
 
-    private void checkFood() {
+    private void placeHead(int pi, Snake snake) {
+        int head = snake.getHeadCell();
+        int owner = grid.getOwner(head);
+
+        if (owner == OccupancyGrid.NO_OWNER) {
+            grid.occupy(head, pi);
+            return;
+        }
+
+        deadSnakes.add(pi);
+
+        Snake other = snakes.get(owner);
+        if (owner != pi && other != null && other.getHeadCell() == head) {
+            if (!deadSnakes.contains(owner)) {
+                deadSnakes.add(owner);
+            }
+        } else {
+            increasePlayerScore(owner);
+        }
+    }
 
+    private void checkFood() {
         int createFood = 0;
-        boolean eaten = false;
         for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-            Point head = entry.getValue().getHead();
+            int head = entry.getValue().getHeadCell();
 
-            for (Point p : food) {
-                if (head.equals(p)) {
-                    eaten = true;
-                    break;
-                }
-            }
-            if (eaten) {
-                food.remove(head);
+            if (grid.isFood(head)) {
+                removeFood(head);
                 ++createFood;
-                eaten = false;
             }
         }
 
         generateFood(createFood);
     }
 
+    private void addFood(int cell) {
+        grid.setFoodSlot(cell, food.size());
+        food.add(new Point(grid.getCellX(cell), grid.getCellY(cell)));
+    }
+
+    private void removeFood(int cell) {
+        int slot = grid.getFoodSlot(cell);
+        Point last = food.remove(food.size() - 1);
+
+        if (slot < food.size()) {
+            food.set(slot, last);
+            grid.setFoodSlot(grid.getCell(last.getX(), last.getY()), slot);
+        }
+
+        grid.setFoodSlot(cell, OccupancyGrid.NO_FOOD);
+    }
+
+    private void occupySnake(int pi, Snake snake) {
+        for (int i = 0; i < snake.getSnakeSize(); ++i) {
+            grid.occupy(snake.getSegmentCell(i), pi);
+        }
+    }
+
+    private void releaseSnake(int pi, Snake snake) {
+        for (int i = 0; i < snake.getSnakeSize(); ++i) {
+            grid.release(snake.getSegmentCell(i), pi);
+        }
+    }
+
     public boolean isGameOver() {
         for (SnakesProto.GamePlayer gp : players.values()) {
             if (gp.getRole() != SnakesProto.NodeRole.VIEWER) return false;
@@ -229,31 +339,16 @@ public class GameLogic {
     }
 
     public boolean isDead(int playerId) {
-        return !snakes.containsKey(playerId);
+        return !frame.hasSnake(playerId);
     }
 
-    private void moveSnake(int pi, Snake snake, SnakesProto.Direction move) {
-        Point head = snake.getHead();
-
-        Point shift = getShiftByMovement(move);
-
-        int newHeadPosX = (head.getX() + shift.getX() + width) % width;
-        int newHeadPosY = (head.getY() + shift.getY() + height) % height;
-
-        if (isFood(newHeadPosX, newHeadPosY)) {
+    private int moveSnake(int pi, Snake snake, SnakesProto.Direction move) {
+        if (grid.isFood(snake.getNextHeadCell(move))) {
             snake.increaseSnake();
             increasePlayerScore(pi);
         }
 
-        snake.moveSnake(move);
-    }
-
-    public ArrayList<Point> getFood() {
-        return food;
-    }
-
-    public HashMap<Integer, Snake> getSnakes() {
-        return snakes;
+        return snake.moveSnake(move);
     }
 
     public int getHeight() {
@@ -265,12 +360,13 @@ public class GameLogic {
     }
 
     private void killPlayer(Integer pi) {
-        ArrayList<Point> body = snakes.get(pi).getSnakeBody();
-        for (int i = 0; i < body.size(); ++i) {
-            if (i == 0) continue;
+        Snake snake = snakes.get(pi);
+        for (int i = 1; i < snake.getSnakeSize(); ++i) {
             if (foodDropped()) {
-                Point p = body.get(i);
-                food.add(new Point(p.getX(), p.getY()));
+                int cell = snake.getSegmentCell(i);
+                if (grid.isEmpty(cell)) {
+                    addFood(cell);
+                }
             }
         }
 
@@ -284,43 +380,12 @@ public class GameLogic {
         if (availableNum == 0) return;
 
         for (int i = 0; i < availableNum; ++i) {
-            while (true) {
-                int foodX = rand.nextInt(width);
-                int foodY = rand.nextInt(height);
-                if (isEmptyCell(foodX, foodY)) {
-                    food.add(new Point(foodX, foodY));
-                    break;
-                }
-            }
+            addFood(grid.getFreeCell(rand.nextInt(grid.getFreeCount())));
         }
     }
 
-    private boolean isEmptyCell(int x, int y) {
-        for (Point p : food) {
-            if (p.getX() == x && p.getY() == y) {
-                return false;
-            }
-        }
-
-        for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-            for (Point p : entry.getValue().getSnakeBody()) {
-                if (p.getX() == x && p.getY() == y)
-                    return false;
-            }
-        }
-
-        return true;
-    }
-
     private int getNumOfFreeCells() {
-        int result = 0;
-        for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-            result += entry.getValue().getSnakeSize();
-        }
-
-        result += food.size();
-
-        return height * width - result;
+        return grid.getFreeCount();
     }
 
     private boolean foodDropped() {
@@ -330,22 +395,6 @@ public class GameLogic {
     private Point findSpawnAreaRect() {
         if (getNumOfFreeCells() < SPAWN_AREA * SPAWN_AREA) return new Point(-1, -1);
 
-        boolean[][] freePlace = new boolean[width][height];
-        for (int i = 0; i < width; ++i)
-            for (int j = 0; j < height; ++j)
-                freePlace[i][j] = true;
-
-
-        for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-            for (Point p : entry.getValue().getSnakeBody()) {
-                freePlace[p.getX()][p.getY()] = false;
-            }
-        }
-
-        for (Point p : food) {
-            freePlace[p.getX()][p.getY()] = false;
-        }
-
         int halfOfSpawn = SPAWN_AREA / 2;
 
         for (int i = halfOfSpawn; i < width - halfOfSpawn; ++i) {
@@ -353,7 +402,7 @@ public class GameLogic {
                 boolean good = true;
                 for (int k = 0; k < SPAWN_AREA; ++k) {
                     for (int l = 0; l < SPAWN_AREA; ++l) {
-                        if (!freePlace[k + i - halfOfSpawn][l + j - halfOfSpawn]) {
+                        if (!grid.isEmpty(grid.getCell(k + i - halfOfSpawn, l + j - halfOfSpawn))) {
                             good = false;
                             break;
                         }
@@ -402,14 +451,20 @@ public class GameLogic {
         return newSnakeBody;
     }
 
-    public void loadState(SnakesProto.GameState newGameState, NodeInfo sender) {
+    public void loadState(SnakesProto.GameState newGameState, String senderIp) {
+        GameSnapshot snapshot;
         synchronized (this) {
+            stateHistory[newGameState.getStateOrder() % HISTORY_SIZE] = newGameState;
             gameStateCounter = newGameState.getStateOrder();
 
             food.clear();
+            grid.clear();
             for (int i = 0; i < newGameState.getFoodsCount(); ++i) {
                 SnakesProto.GameState.Coord coord = newGameState.getFoods(i);
-                food.add(i, new Point(coord.getX(), coord.getY()));
+                int cell = grid.getCell(coord.getX(), coord.getY());
+                if (!grid.isFood(cell)) {
+                    addFood(cell);
+                }
             }
 
             SnakesProto.GamePlayers gamePl = newGameState.getPlayers();
@@ -419,7 +474,9 @@ public class GameLogic {
             for (int i = 0; i < newGameState.getSnakesCount(); ++i) {
                 SnakesProto.GameState.Snake snake = newGameState.getSnakes(i);
 
-                snakes.put(snake.getPlayerId(), new Snake(snake, newGameState.getConfig()));
+                Snake newSnake = new Snake(snake, newGameState.getConfig());
+                snakes.put(snake.getPlayerId(), newSnake);
+                occupySnake(snake.getPlayerId(), newSnake);
                 movements.put(snake.getPlayerId(), snake.getHeadDirection());
             }
 
@@ -427,51 +484,64 @@ public class GameLogic {
                 SnakesProto.GamePlayer gamePlayer = gamePl.getPlayers(i);
 
                 if (gamePlayer.getIpAddress().equals("")) {
-                    gamePlayer = gamePlayer.toBuilder().setIpAddress(sender.getIp().toString()).build();
+                    gamePlayer = gamePlayer.toBuilder().setIpAddress(senderIp).build();
                 }
                 players.put(gamePlayer.getId(), gamePlayer);
 
             }
 
             gameStateCounter = newGameState.getStateOrder();
+            snapshot = publish();
         }
-    }
 
-    public int getGameStateCounter() {
-        return gameStateCounter;
+        notifyListeners(snapshot);
     }
 
-    public SnakesProto.GameState generateNewState() {
+    public SnakesProto.GameState decodeDelta(ByteString delta) throws IOException {
+        int baseOrder = StateDelta.getBaseOrder(delta);
+        if (baseOrder < 0) return null;
+
+        SnakesProto.GameState base;
         synchronized (this) {
-            SnakesProto.GameState.Builder gameStateBuilder = SnakesProto.GameState.newBuilder();
+            base = stateHistory[baseOrder % HISTORY_SIZE];
+        }
 
-            gameStateBuilder.setStateOrder(gameStateCounter)
-                    .setConfig(gameConfig);
+        if (base == null || base.getStateOrder() != baseOrder) return null;
 
-            for (Point p : food) {
-                gameStateBuilder.addFoods(SnakesProto.GameState.Coord.newBuilder()
-                        .setX(p.getX())
-                        .setY(p.getY()));
-            }
+        return StateDelta.apply(base, delta);
+    }
 
-            SnakesProto.GamePlayers.Builder gamePlayersBuilder = SnakesProto.GamePlayers.newBuilder();
+    public int getGameStateCounter() {
+        return frame.getStateOrder();
+    }
 
+    public SnakesProto.GameState generateNewState(GameSnapshot snapshot) {
+        SnakesProto.GameState.Builder gameStateBuilder = SnakesProto.GameState.newBuilder();
 
-            for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : players.entrySet()) {
-                gamePlayersBuilder.addPlayers(entry.getValue());
-            }
+        gameStateBuilder.setStateOrder(snapshot.getStateOrder())
+                .setConfig(gameConfig);
 
+        for (int i = 0; i < snapshot.getFoodCount(); ++i) {
+            gameStateBuilder.addFoods(SnakesProto.GameState.Coord.newBuilder()
+                    .setX(snapshot.getFoodX(i))
+                    .setY(snapshot.getFoodY(i)));
+        }
 
-            for (Map.Entry<Integer, Snake> entry : snakes.entrySet()) {
-                gameStateBuilder.addSnakes(entry.getValue().encodeSnakeToMessage());
-            }
+        SnakesProto.GamePlayers.Builder gamePlayersBuilder = SnakesProto.GamePlayers.newBuilder();
 
-            gameStateBuilder.setPlayers(gamePlayersBuilder);
 
-            ++gameStateCounter;
+        for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : snapshot.getPlayers().entrySet()) {
+            gamePlayersBuilder.addPlayers(entry.getValue());
+        }
+
 
-            return gameStateBuilder.build();
+        for (SnakeSnapshot snake : snapshot.getSnakes()) {
+            gameStateBuilder.addSnakes(snake.encodeSnakeToMessage());
         }
+
+        gameStateBuilder.setPlayers(gamePlayersBuilder);
+
+        return gameStateBuilder.build();
     }
 
     private int generateFoodCount(int numOfPlayers) {
@@ -482,21 +552,31 @@ public class GameLogic {
         return gameConfig;
     }
 
-    public NetworkLogic getMessageManager() {
-        return messageManager;
+    public boolean hasPlayer(int playerId) {
+        synchronized (this) {
+            return players.containsKey(playerId);
+        }
     }
 
-    public HashMap<Integer, SnakesProto.GamePlayer> getPlayers() {
+    public void setPlayerRole(int playerId, SnakesProto.NodeRole nodeRole) {
         synchronized (this) {
-            return players;
+            SnakesProto.GamePlayer player = players.get(playerId);
+            if (player != null) {
+                players.put(playerId, player.toBuilder().setRole(nodeRole).build());
+                publish();
+            }
         }
     }
 
-    public GameWindow getGameWindow() {
-        return gameWindow;
-    }
+    public void removePlayer(int playerId) {
+        synchronized (this) {
+            Snake snake = snakes.get(playerId);
+            if (snake != null) {
+                snake.setSnakeState(SnakesProto.GameState.Snake.SnakeState.ZOMBIE);
+            }
 
-    public List<Integer> getDeadSnakes() {
-        return deadSnakes;
+            players.remove(playerId);
+            publish();
+        }
     }
 }
@@ -0,0 +1,83 @@
+package Logic;
+
+import Protobuf.SnakesProto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class GameSnapshot {
+    private final int stateOrder;
+    private final int width;
+    private final int height;
+
+    private final int[] food;
+    private final List<SnakeSnapshot> snakes;
+    private final Map<Integer, SnakesProto.GamePlayer> players;
+    private final List<Integer> deadSnakes;
+
+    public GameSnapshot(int stateOrder, int width, int height, int[] food, List<SnakeSnapshot> snakes,
+                        Map<Integer, SnakesProto.GamePlayer> players, List<Integer> deadSnakes) {
+        this.stateOrder = stateOrder;
+        this.width = width;
+        this.height = height;
+        this.food = food;
+        this.snakes = Collections.unmodifiableList(snakes);
+        this.players = Collections.unmodifiableMap(players);
+        this.deadSnakes = Collections.unmodifiableList(deadSnakes);
+    }
+
+    public int getStateOrder() {
+        return stateOrder;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getFoodCount() {
+        return food.length;
+    }
+
+    public int getFoodCell(int i) {
+        return food[i];
+    }
+
+    public int getFoodX(int i) {
+        return food[i] % width;
+    }
+
+    public int getFoodY(int i) {
+        return food[i] / width;
+    }
+
+    public List<SnakeSnapshot> getSnakes() {
+        return snakes;
+    }
+
+    public Map<Integer, SnakesProto.GamePlayer> getPlayers() {
+        return players;
+    }
+
+    public boolean hasSnake(int playerId) {
+        for (SnakeSnapshot snake : snakes) {
+            if (snake.getPlayerId() == playerId) return true;
+        }
+        return false;
+    }
+
+    public List<Integer> getDeadSnakes() {
+        return deadSnakes;
+    }
+
+    public boolean isGameOver() {
+        for (SnakesProto.GamePlayer gp : players.values()) {
+            if (gp.getRole() != SnakesProto.NodeRole.VIEWER) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,13 @@
+package Logic;
+
+import Protobuf.SnakesProto;
+
+public interface GameView {
+    void setPlayerID(int playerID);
+
+    void setNodeRole(SnakesProto.NodeRole nodeRole);
+
+    void showError(String error);
+
+    void terminate();
+}
@@ -0,0 +1,119 @@
+package Logic;
+
+import java.util.Arrays;
+
+public class OccupancyGrid {
+    public static final int NO_OWNER = 0;
+    public static final int NO_FOOD = -1;
+
+    private final int width;
+    private final int height;
+
+    private final int[] owners;
+    private final int[] foodSlots;
+
+    private final int[] freeCells;
+    private final int[] freePositions;
+    private int freeCount;
+
+    public OccupancyGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+
+        owners = new int[width * height];
+        foodSlots = new int[width * height];
+        freeCells = new int[width * height];
+        freePositions = new int[width * height];
+
+        clear();
+    }
+
+    public void clear() {
+        Arrays.fill(owners, NO_OWNER);
+        Arrays.fill(foodSlots, NO_FOOD);
+
+        for (int i = 0; i < freeCells.length; ++i) {
+            freeCells[i] = i;
+            freePositions[i] = i;
+        }
+        freeCount = freeCells.length;
+    }
+
+    private void updateFree(int i) {
+        boolean empty = owners[i] == NO_OWNER && foodSlots[i] == NO_FOOD;
+        int pos = freePositions[i];
+
+        if (empty && pos == -1) {
+            freeCells[freeCount] = i;
+            freePositions[i] = freeCount;
+            ++freeCount;
+        } else if (!empty && pos != -1) {
+            --freeCount;
+            int last = freeCells[freeCount];
+            freeCells[pos] = last;
+            freePositions[last] = pos;
+            freePositions[i] = -1;
+        }
+    }
+
+    public int getCell(int x, int y) {
+        return y * width + x;
+    }
+
+    public int getOwner(int cell) {
+        return owners[cell];
+    }
+
+    public boolean isFood(int cell) {
+        return foodSlots[cell] != NO_FOOD;
+    }
+
+    public boolean isEmpty(int cell) {
+        return freePositions[cell] != -1;
+    }
+
+    public void occupy(int cell, int owner) {
+        owners[cell] = owner;
+        updateFree(cell);
+    }
+
+    public void release(int cell, int owner) {
+        if (owners[cell] == owner) {
+            owners[cell] = NO_OWNER;
+            updateFree(cell);
+        }
+    }
+
+    public int getFoodSlot(int cell) {
+        return foodSlots[cell];
+    }
+
+    public void setFoodSlot(int cell, int slot) {
+        foodSlots[cell] = slot;
+        updateFree(cell);
+    }
+
+    public int getFreeCount() {
+        return freeCount;
+    }
+
+    public int getFreeCell(int n) {
+        return freeCells[n];
+    }
+
+    public int getCellX(int cell) {
+        return cell % width;
+    }
+
+    public int getCellY(int cell) {
+        return cell / width;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
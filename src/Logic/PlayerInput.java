@@ -0,0 +1,7 @@
+package Logic;
+
+import Protobuf.SnakesProto;
+
+public interface PlayerInput {
+    void steer(int playerId, SnakesProto.Direction direction);
+}
@@ -9,9 +9,13 @@ public class Snake {
     private final int fieldHeight;
     private final int fieldWidth;
 
+    private static final int INITIAL_CAPACITY = 8;
+
     private boolean hasEaten = false;
 
-    private final ArrayList<Point> snakeBody;
+    private int[] body = new int[INITIAL_CAPACITY];
+    private int headPos = 0;
+    private int size = 0;
 
     private SnakesProto.Direction prevMovement;
     private SnakesProto.GameState.Snake.SnakeState snakeState;
@@ -21,8 +25,6 @@ public class Snake {
             SnakesProto.GameConfig gameConfig
     ) {
 
-        this.snakeBody = new ArrayList<>();
-
         this.fieldWidth = gameConfig.getWidth();
         this.fieldHeight = gameConfig.getHeight();
 
@@ -41,23 +43,23 @@ public class Snake {
             int playerId,
             SnakesProto.GameState.Snake.SnakeState snakeState
     ) {
-        this.snakeBody = snakeBody;
         this.fieldHeight = fieldLength;
         this.fieldWidth = fieldWidth;
         this.playerId = playerId;
         this.snakeState = snakeState;
 
+        for (Point p : snakeBody) {
+            append(p.getY() * fieldWidth + p.getX());
+        }
+
         prevMovement = getPrevMovementFromStart();
     }
 
     private SnakesProto.Direction getPrevMovementFromStart() {
-        if (snakeBody.size() < 2) return SnakesProto.Direction.RIGHT;
+        if (size < 2) return SnakesProto.Direction.RIGHT;
 
-        Point p1 = snakeBody.get(0);
-        Point p2 = snakeBody.get(1);
-
-        int diffX = p1.getX() - p2.getX();
-        int diffY = p1.getY() - p2.getY();
+        int diffX = getSegmentX(0) - getSegmentX(1);
+        int diffY = getSegmentY(0) - getSegmentY(1);
 
         if (diffX != 0) {
             return (diffX > 0) ? SnakesProto.Direction.RIGHT : SnakesProto.Direction.LEFT;
@@ -108,154 +110,109 @@ public class Snake {
         return snakeState;
     }
 
-    void moveSnake(SnakesProto.Direction move) {
-        if (hasEaten) {
-            snakeBody.add(new Point(snakeBody.get(snakeBody.size() - 1)));
-        }
-
-        for (int i = snakeBody.size() - ((hasEaten) ? 1 : 0) - 1; i > 0; --i) {
-            snakeBody.get(i).setValues(snakeBody.get(i - 1));
-        }
+    int getNextHeadCell(SnakesProto.Direction move) {
+        int x = getSegmentX(0);
+        int y = getSegmentY(0);
 
         switch (move) {
             case UP: {
-                snakeBody.get(0).setY(snakeBody.get(0).getY() - 1);
+                y = (y == 0) ? fieldHeight - 1 : y - 1;
                 break;
             }
             case DOWN: {
-                snakeBody.get(0).setY(snakeBody.get(0).getY() + 1);
+                y = (y == fieldHeight - 1) ? 0 : y + 1;
                 break;
             }
             case LEFT: {
-                snakeBody.get(0).setX(snakeBody.get(0).getX() - 1);
+                x = (x == 0) ? fieldWidth - 1 : x - 1;
                 break;
             }
             case RIGHT: {
-                snakeBody.get(0).setX(snakeBody.get(0).getX() + 1);
+                x = (x == fieldWidth - 1) ? 0 : x + 1;
                 break;
             }
         }
 
-        normalizeSnake();
-        prevMovement = move;
-        hasEaten = false;
+        return y * fieldWidth + x;
     }
 
-    private void normalizeSnake() {
-        Point p;
-        for (Point aSnake : snakeBody) {
-            p = aSnake;
-
-            int sX = p.getX();
-            int sY = p.getY();
+    int moveSnake(SnakesProto.Direction move) {
+        int newHead = getNextHeadCell(move);
+        int tail = -1;
 
-            sX %= fieldWidth;
-            while (sX < 0) sX += fieldWidth;
-
-            sY %= fieldHeight;
-            while (sY < 0) sY += fieldHeight;
-
-            p.setX(sX);
-            p.setY(sY);
+        if (hasEaten) {
+            ensureCapacity(size + 1);
+            ++size;
+        } else {
+            tail = getSegmentCell(size - 1);
         }
-    }
 
-    public Point getHead() {
-        return snakeBody.get(0);
-    }
+        headPos = (headPos - 1) & (body.length - 1);
+        body[headPos] = newHead;
 
-    public ArrayList<Point> getSnakeBody() {
-        return snakeBody;
-    }
+        prevMovement = move;
+        hasEaten = false;
 
-    public int getSnakeSize() {
-        return snakeBody.size();
+        return tail;
     }
 
-    public SnakesProto.Direction getPrevMovement() {
-        return prevMovement;
+    private void append(int cell) {
+        ensureCapacity(size + 1);
+        body[(headPos + size) & (body.length - 1)] = cell;
+        ++size;
     }
 
-    public SnakesProto.GameState.Snake encodeSnakeToMessage() {
-        SnakesProto.GameState.Snake.Builder snakeBuilder = SnakesProto.GameState.Snake.newBuilder();
-
-        snakeBuilder.setPlayerId(playerId);
-        snakeBuilder.setState(snakeState);
-        snakeBuilder.setHeadDirection(prevMovement);
-
-        Point head = getHead();
-
-        snakeBuilder.addPoints(SnakesProto.GameState.Coord.newBuilder()
-                .setX(head.getX())
-                .setY(head.getY())
-        );
-
-
-        Point buffer = new Point();
-
-        for (int i = 1; i < snakeBody.size(); ++i) {
-            Point p1 = snakeBody.get(i - 1);
+    private void ensureCapacity(int capacity) {
+        if (capacity <= body.length) return;
 
-            Point currPoint = snakeBody.get(i);
-
-            int newXShift = currPoint.getX() - p1.getX();
-            int newYShift = currPoint.getY() - p1.getY();
-
-            if (newYShift > 0) {
-                if (newYShift > 1) {
-                    newYShift = -1;
-                }
-            } else {
-                if (newYShift < -1) {
-                    newYShift = 1;
-                }
-            }
-
-            if (newXShift > 0) {
-                if (newXShift > 1) {
-                    newXShift = -1;
-                }
-            } else {
-                if (newXShift < -1) {
-                    newXShift = 1;
-                }
-            }
-
-            buffer.setY(newYShift + buffer.getY());
-            buffer.setX(newXShift + buffer.getX());
+        int[] newBody = new int[body.length * 2];
+        for (int i = 0; i < size; ++i) {
+            newBody[i] = getSegmentCell(i);
+        }
 
-            if (i == snakeBody.size() - 1) {
-                snakeBuilder.addPoints(SnakesProto.GameState.Coord.newBuilder()
-                        .setX(buffer.getX())
-                        .setY(buffer.getY())
-                );
-                break;
-            }
+        body = newBody;
+        headPos = 0;
+    }
 
-            Point p2 = snakeBody.get(i + 1);
+    public int getSegmentCell(int i) {
+        return body[(headPos + i) & (body.length - 1)];
+    }
 
-            int xShift = p1.getX() - p2.getX();
-            int yShift = p1.getY() - p2.getY();
+    public int getSegmentX(int i) {
+        return getSegmentCell(i) % fieldWidth;
+    }
 
+    public int getSegmentY(int i) {
+        return getSegmentCell(i) / fieldWidth;
+    }
 
-            if (Math.abs(xShift) != 0 && Math.abs(yShift) != 0) {
+    public int getHeadCell() {
+        return body[headPos];
+    }
 
-                snakeBuilder.addPoints(SnakesProto.GameState.Coord.newBuilder()
-                        .setX(buffer.getX())
-                        .setY(buffer.getY())
-                );
+    public Point getHead() {
+        return new Point(getSegmentX(0), getSegmentY(0));
+    }
 
-                buffer = new Point();
-            }
+    public int getSnakeSize() {
+        return size;
+    }
 
+    public int[] getCells() {
+        int[] cells = new int[size];
+        for (int i = 0; i < size; ++i) {
+            cells[i] = getSegmentCell(i);
         }
+        return cells;
+    }
 
-
-        return snakeBuilder.build();
+    public SnakesProto.Direction getPrevMovement() {
+        return prevMovement;
     }
 
     public void loadSnake(SnakesProto.GameState.Snake snakeMessage) {
-        snakeBody.clear();
+        headPos = 0;
+        size = 0;
 
         decodeSnakeFromMessage(snakeMessage);
 
@@ -270,10 +227,11 @@ public class Snake {
     private void decodeSnakeFromMessage(SnakesProto.GameState.Snake snakeMessage) {
         SnakesProto.GameState.Coord head = snakeMessage.getPointsList().get(0);
 
-        snakeBody.add(new Point(head.getX(), head.getY()));
+        append(head.getY() * fieldWidth + head.getX());
 
         for (int i = 1; i < snakeMessage.getPointsCount(); ++i) {
-            Point prevPoint = snakeBody.get(snakeBody.size() - 1);
+            int prevX = getSegmentX(size - 1);
+            int prevY = getSegmentY(size - 1);
             SnakesProto.GameState.Coord shift = snakeMessage.getPoints(i);
 
             int yDirection = 0;
@@ -299,19 +257,16 @@ public class Snake {
             }
 
             for (int j = 0; j < numOfPoints; ++j) {
-                Point newPoint = getNormalizePoint(prevPoint.getX() + (j + 1) * xDirection,
-                        prevPoint.getY() + (j + 1) * yDirection);
-
-                snakeBody.add(newPoint);
+                append(getNormalizeCell(prevX + (j + 1) * xDirection, prevY + (j + 1) * yDirection));
             }
         }
     }
 
-    private Point getNormalizePoint(int x, int y) {
+    private int getNormalizeCell(int x, int y) {
         while (y <= 0) y += fieldHeight;
         while (x <= 0) x += fieldWidth;
 
-        return new Point(x % fieldWidth, y % fieldHeight);
+        return (y % fieldHeight) * fieldWidth + x % fieldWidth;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package Logic;
+
+import Protobuf.SnakesProto;
+
+public class SnakeSnapshot {
+    private final int playerId;
+    private final int fieldWidth;
+    private final int[] cells;
+
+    private final SnakesProto.Direction direction;
+    private final SnakesProto.GameState.Snake.SnakeState snakeState;
+
+    public SnakeSnapshot(Snake snake, int fieldWidth) {
+        this.playerId = snake.getPlayerId();
+        this.fieldWidth = fieldWidth;
+        this.cells = snake.getCells();
+        this.direction = snake.getPrevMovement();
+        this.snakeState = snake.getSnakeState();
+    }
+
+    public SnakeSnapshot(int playerId, int fieldWidth, int[] cells, SnakesProto.Direction direction,
+                         SnakesProto.GameState.Snake.SnakeState snakeState) {
+        this.playerId = playerId;
+        this.fieldWidth = fieldWidth;
+        this.cells = cells;
+        this.direction = direction;
+        this.snakeState = snakeState;
+    }
+
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getSnakeSize() {
+        return cells.length;
+    }
+
+    public int getSegmentCell(int i) {
+        return cells[i];
+    }
+
+    public int getSegmentX(int i) {
+        return cells[i] % fieldWidth;
+    }
+
+    public int getSegmentY(int i) {
+        return cells[i] / fieldWidth;
+    }
+
+    public int getHeadCell() {
+        return cells[0];
+    }
+
+    public SnakesProto.Direction getDirection() {
+        return direction;
+    }
+
+    public SnakesProto.GameState.Snake.SnakeState getSnakeState() {
+        return snakeState;
+    }
+
+    public SnakesProto.GameState.Snake encodeSnakeToMessage() {
+        SnakesProto.GameState.Snake.Builder snakeBuilder = SnakesProto.GameState.Snake.newBuilder();
+
+        snakeBuilder.setPlayerId(playerId);
+        snakeBuilder.setState(snakeState);
+        snakeBuilder.setHeadDirection(direction);
+
+        snakeBuilder.addPoints(SnakesProto.GameState.Coord.newBuilder()
+                .setX(getSegmentX(0))
+                .setY(getSegmentY(0))
+        );
+
+
+        int bufferX = 0;
+        int bufferY = 0;
+
+        for (int i = 1; i < cells.length; ++i) {
+            int p1X = getSegmentX(i - 1);
+            int p1Y = getSegmentY(i - 1);
+
+            int newXShift = getSegmentX(i) - p1X;
+            int newYShift = getSegmentY(i) - p1Y;
+
+            if (newYShift > 0) {
+                if (newYShift > 1) {
+                    newYShift = -1;
+                }
+            } else {
+                if (newYShift < -1) {
+                    newYShift = 1;
+                }
+            }
+
+            if (newXShift > 0) {
+                if (newXShift > 1) {
+                    newXShift = -1;
+                }
+            } else {
+                if (newXShift < -1) {
+                    newXShift = 1;
+                }
+            }
+
+            bufferY += newYShift;
+            bufferX += newXShift;
+
+            if (i == cells.length - 1) {
+                snakeBuilder.addPoints(SnakesProto.GameState.Coord.newBuilder()
+                        .setX(bufferX)
+                        .setY(bufferY)
+                );
+                break;
+            }
+
+            int xShift = p1X - getSegmentX(i + 1);
+            int yShift = p1Y - getSegmentY(i + 1);
+
+
+            if (Math.abs(xShift) != 0 && Math.abs(yShift) != 0) {
+
+                snakeBuilder.addPoints(SnakesProto.GameState.Coord.newBuilder()
+                        .setX(bufferX)
+                        .setY(bufferY)
+                );
+
+                bufferX = 0;
+                bufferY = 0;
+            }
+
+        }
+
+
+        return snakeBuilder.build();
+    }
+}
@@ -0,0 +1,65 @@
+package Logic;
+
+import Protobuf.SnakesProto;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class StandbyReplica {
+    private final int stateOrder;
+    private final Map<Integer, SnakesProto.Direction> pendingMovements;
+
+    public StandbyReplica(int stateOrder, Map<Integer, SnakesProto.Direction> pendingMovements) {
+        this.stateOrder = stateOrder;
+        this.pendingMovements = pendingMovements;
+    }
+
+    public int getStateOrder() {
+        return stateOrder;
+    }
+
+    public Map<Integer, SnakesProto.Direction> getPendingMovements() {
+        return pendingMovements;
+    }
+
+    public ByteString toByteString() {
+        ByteString.Output output = ByteString.newOutput();
+        CodedOutputStream out = CodedOutputStream.newInstance(output);
+
+        try {
+            out.writeUInt32NoTag(stateOrder);
+            out.writeUInt32NoTag(pendingMovements.size());
+            for (Map.Entry<Integer, SnakesProto.Direction> entry : pendingMovements.entrySet()) {
+                out.writeUInt32NoTag(entry.getKey());
+                out.writeEnumNoTag(entry.getValue().getNumber());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode standby replica", e);
+        }
+
+        return output.toByteString();
+    }
+
+    public static StandbyReplica parse(ByteString bytes) throws IOException {
+        CodedInputStream in = bytes.newCodedInput();
+
+        int stateOrder = in.readUInt32();
+        int count = in.readUInt32();
+
+        Map<Integer, SnakesProto.Direction> pendingMovements = new HashMap<>();
+        for (int i = 0; i < count; ++i) {
+            int playerId = in.readUInt32();
+            SnakesProto.Direction direction = SnakesProto.Direction.forNumber(in.readEnum());
+            if (direction != null) {
+                pendingMovements.put(playerId, direction);
+            }
+        }
+
+        return new StandbyReplica(stateOrder, pendingMovements);
+    }
+}
@@ -0,0 +1,283 @@
+package Logic;
+
+import Protobuf.SnakesProto;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+
+import java.io.IOException;
+import java.util.*;
+
+public class StateDelta {
+    private static final int FULL_SNAKE = 0;
+    private static final int MOVED_SNAKE = 1;
+
+    public static ByteString encode(GameSnapshot base, GameSnapshot current) {
+        ByteString.Output output = ByteString.newOutput();
+        CodedOutputStream out = CodedOutputStream.newInstance(output);
+
+        try {
+            out.writeUInt32NoTag(base.getStateOrder());
+            out.writeUInt32NoTag(current.getStateOrder());
+
+            Map<Integer, SnakeSnapshot> baseSnakes = new HashMap<>();
+            for (SnakeSnapshot snake : base.getSnakes()) {
+                baseSnakes.put(snake.getPlayerId(), snake);
+            }
+
+            List<Integer> removedSnakes = new ArrayList<>(baseSnakes.keySet());
+            for (SnakeSnapshot snake : current.getSnakes()) {
+                removedSnakes.remove((Integer) snake.getPlayerId());
+            }
+            writeIds(out, removedSnakes);
+
+            out.writeUInt32NoTag(current.getSnakes().size());
+            for (SnakeSnapshot snake : current.getSnakes()) {
+                writeSnake(out, baseSnakes.get(snake.getPlayerId()), snake);
+            }
+
+            writeFood(out, base, current);
+
+            List<Integer> removedPlayers = new ArrayList<>();
+            for (Integer id : base.getPlayers().keySet()) {
+                if (!current.getPlayers().containsKey(id)) {
+                    removedPlayers.add(id);
+                }
+            }
+            writeIds(out, removedPlayers);
+
+            List<SnakesProto.GamePlayer> changedPlayers = new ArrayList<>();
+            for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : current.getPlayers().entrySet()) {
+                if (!entry.getValue().equals(base.getPlayers().get(entry.getKey()))) {
+                    changedPlayers.add(entry.getValue());
+                }
+            }
+            out.writeUInt32NoTag(changedPlayers.size());
+            for (SnakesProto.GamePlayer player : changedPlayers) {
+                out.writeMessageNoTag(player);
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode state delta", e);
+        }
+
+        return output.toByteString();
+    }
+
+    public static int getBaseOrder(ByteString delta) throws IOException {
+        return delta.newCodedInput().readUInt32();
+    }
+
+    public static int getStateOrder(ByteString delta) throws IOException {
+        CodedInputStream in = delta.newCodedInput();
+        in.readUInt32();
+        return in.readUInt32();
+    }
+
+    public static SnakesProto.GameState apply(SnakesProto.GameState base, ByteString delta) throws IOException {
+        CodedInputStream in = delta.newCodedInput();
+
+        SnakesProto.GameConfig config = base.getConfig();
+        int width = config.getWidth();
+        int cellCount = width * config.getHeight();
+
+        in.readUInt32();
+        int stateOrder = in.readUInt32();
+
+        Map<Integer, SnakesProto.GameState.Snake> snakes = new LinkedHashMap<>();
+        for (SnakesProto.GameState.Snake snake : base.getSnakesList()) {
+            snakes.put(snake.getPlayerId(), snake);
+        }
+
+        int removedSnakes = readCount(in, cellCount);
+        for (int i = 0; i < removedSnakes; ++i) {
+            snakes.remove(in.readUInt32());
+        }
+
+        int snakesCount = readCount(in, cellCount);
+        for (int i = 0; i < snakesCount; ++i) {
+            int playerId = in.readUInt32();
+            SnakesProto.GameState.Snake.SnakeState snakeState =
+                    SnakesProto.GameState.Snake.SnakeState.forNumber(in.readEnum());
+            SnakesProto.Direction direction = SnakesProto.Direction.forNumber(in.readEnum());
+            if (snakeState == null || direction == null) {
+                throw new IOException("Delta has an invalid state or direction for snake " + playerId);
+            }
+
+            int[] cells;
+            if (in.readUInt32() == FULL_SNAKE) {
+                cells = readCells(in, readCount(in, cellCount), cellCount);
+            } else {
+                int[] newCells = readCells(in, readCount(in, cellCount), cellCount);
+                int keep = in.readUInt32();
+
+                SnakesProto.GameState.Snake baseSnake = snakes.get(playerId);
+                if (baseSnake == null) {
+                    throw new IOException("Delta moves unknown snake " + playerId);
+                }
+                int[] baseCells = new Snake(baseSnake, config).getCells();
+                if (keep < 0 || keep > baseCells.length || newCells.length + keep > cellCount) {
+                    throw new IOException("Delta keeps " + keep + " cells of snake " + playerId);
+                }
+
+                cells = new int[newCells.length + keep];
+                System.arraycopy(newCells, 0, cells, 0, newCells.length);
+                System.arraycopy(baseCells, 0, cells, newCells.length, keep);
+            }
+
+            snakes.put(playerId, new SnakeSnapshot(playerId, width, cells, direction, snakeState)
+                    .encodeSnakeToMessage());
+        }
+
+        Set<Integer> food = new LinkedHashSet<>();
+        for (SnakesProto.GameState.Coord coord : base.getFoodsList()) {
+            food.add(coord.getY() * width + coord.getX());
+        }
+        int removedFood = readCount(in, cellCount);
+        for (int i = 0; i < removedFood; ++i) {
+            food.remove(in.readUInt32());
+        }
+        for (int cell : readCells(in, readCount(in, cellCount), cellCount)) {
+            food.add(cell);
+        }
+
+        Map<Integer, SnakesProto.GamePlayer> players = new LinkedHashMap<>();
+        for (SnakesProto.GamePlayer player : base.getPlayers().getPlayersList()) {
+            players.put(player.getId(), player);
+        }
+        int removedPlayers = readCount(in, cellCount);
+        for (int i = 0; i < removedPlayers; ++i) {
+            players.remove(in.readUInt32());
+        }
+        int changedPlayers = readCount(in, cellCount);
+        for (int i = 0; i < changedPlayers; ++i) {
+            SnakesProto.GamePlayer player = in.readMessage(SnakesProto.GamePlayer.parser(),
+                    ExtensionRegistryLite.getEmptyRegistry());
+            players.put(player.getId(), player);
+        }
+
+        SnakesProto.GameState.Builder stateBuilder = SnakesProto.GameState.newBuilder()
+                .setStateOrder(stateOrder)
+                .setConfig(config)
+                .addAllSnakes(snakes.values())
+                .setPlayers(SnakesProto.GamePlayers.newBuilder().addAllPlayers(players.values()));
+
+        for (int cell : food) {
+            stateBuilder.addFoods(SnakesProto.GameState.Coord.newBuilder()
+                    .setX(cell % width)
+                    .setY(cell / width));
+        }
+
+        return stateBuilder.build();
+    }
+
+    private static void writeSnake(CodedOutputStream out, SnakeSnapshot base, SnakeSnapshot snake)
+            throws IOException {
+        out.writeUInt32NoTag(snake.getPlayerId());
+        out.writeEnumNoTag(snake.getSnakeState().getNumber());
+        out.writeEnumNoTag(snake.getDirection().getNumber());
+
+        int shift = (base == null) ? -1 : findShift(base, snake);
+
+        if (shift < 0) {
+            out.writeUInt32NoTag(FULL_SNAKE);
+            out.writeUInt32NoTag(snake.getSnakeSize());
+            for (int i = 0; i < snake.getSnakeSize(); ++i) {
+                out.writeUInt32NoTag(snake.getSegmentCell(i));
+            }
+            return;
+        }
+
+        out.writeUInt32NoTag(MOVED_SNAKE);
+        out.writeUInt32NoTag(shift);
+        for (int i = 0; i < shift; ++i) {
+            out.writeUInt32NoTag(snake.getSegmentCell(i));
+        }
+        out.writeUInt32NoTag(snake.getSnakeSize() - shift);
+    }
+
+    private static int findShift(SnakeSnapshot base, SnakeSnapshot snake) {
+        int baseHead = base.getHeadCell();
+
+        for (int shift = 0; shift < snake.getSnakeSize(); ++shift) {
+            if (snake.getSegmentCell(shift) != baseHead) continue;
+
+            int keep = snake.getSnakeSize() - shift;
+            if (keep > base.getSnakeSize()) continue;
+
+            boolean matches = true;
+            for (int i = 1; i < keep; ++i) {
+                if (snake.getSegmentCell(shift + i) != base.getSegmentCell(i)) {
+                    matches = false;
+                    break;
+                }
+            }
+
+            if (matches) return shift;
+        }
+
+        return -1;
+    }
+
+    private static void writeFood(CodedOutputStream out, GameSnapshot base, GameSnapshot current)
+            throws IOException {
+        int[] baseFood = sortedFood(base);
+        int[] currentFood = sortedFood(current);
+
+        List<Integer> removed = new ArrayList<>();
+        List<Integer> added = new ArrayList<>();
+
+        int i = 0;
+        int j = 0;
+        while (i < baseFood.length || j < currentFood.length) {
+            if (j == currentFood.length || (i < baseFood.length && baseFood[i] < currentFood[j])) {
+                removed.add(baseFood[i++]);
+            } else if (i == baseFood.length || currentFood[j] < baseFood[i]) {
+                added.add(currentFood[j++]);
+            } else {
+                ++i;
+                ++j;
+            }
+        }
+
+        writeIds(out, removed);
+        writeIds(out, added);
+    }
+
+    private static int[] sortedFood(GameSnapshot snapshot) {
+        int[] food = new int[snapshot.getFoodCount()];
+        for (int i = 0; i < food.length; ++i) {
+            food[i] = snapshot.getFoodCell(i);
+        }
+        Arrays.sort(food);
+        return food;
+    }
+
+    private static void writeIds(CodedOutputStream out, List<Integer> ids) throws IOException {
+        out.writeUInt32NoTag(ids.size());
+        for (int id : ids) {
+            out.writeUInt32NoTag(id);
+        }
+    }
+
+    private static int readCount(CodedInputStream in, int limit) throws IOException {
+        int count = in.readUInt32();
+        if (count < 0 || count > limit) {
+            throw new IOException("Delta count " + count + " exceeds " + limit);
+        }
+        return count;
+    }
+
+    private static int[] readCells(CodedInputStream in, int count, int cellCount) throws IOException {
+        int[] cells = new int[count];
+        for (int i = 0; i < count; ++i) {
+            cells[i] = in.readUInt32();
+            if (cells[i] < 0 || cells[i] >= cellCount) {
+                throw new IOException("Delta cell " + cells[i] + " is outside the field");
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,5 @@
+package Logic;
+
+public interface TickListener {
+    void onTick(GameSnapshot snapshot);
+}
@@ -0,0 +1,116 @@
+package Logic;
+
+import java.util.concurrent.locks.LockSupport;
+
+public class TickScheduler {
+    public enum OverrunPolicy {
+        CATCH_UP,
+        SKIP
+    }
+
+    private static final int MAX_CATCH_UP_TICKS = 5;
+
+    private final Runnable task;
+    private final long periodNanos;
+    private final OverrunPolicy overrunPolicy;
+
+    private Thread thread;
+    private volatile boolean running = false;
+
+    private volatile long tickCount = 0;
+    private volatile long overrunCount = 0;
+    private volatile long skippedTicks = 0;
+    private volatile long lastTickNanos = 0;
+    private volatile long maxTickNanos = 0;
+    private volatile long maxLagNanos = 0;
+
+    public TickScheduler(Runnable task, long periodMs, OverrunPolicy overrunPolicy) {
+        this.task = task;
+        this.periodNanos = periodMs * 1_000_000L;
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    public void start() {
+        synchronized (this) {
+            if (running) return;
+
+            running = true;
+            thread = new Thread(this::run, "game-tick");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        synchronized (this) {
+            running = false;
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        long tickNumber = 0;
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            long deadline = start + tickNumber * periodNanos;
+            long now = System.nanoTime();
+
+            if (now < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                continue;
+            }
+
+            long lag = now - deadline;
+            if (lag > maxLagNanos) maxLagNanos = lag;
+
+            long behind = lag / periodNanos;
+            if (behind > 0 && (overrunPolicy == OverrunPolicy.SKIP || behind > MAX_CATCH_UP_TICKS)) {
+                tickNumber += behind;
+                skippedTicks += behind;
+            }
+
+            long tickStart = System.nanoTime();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            long tickTime = System.nanoTime() - tickStart;
+
+            lastTickNanos = tickTime;
+            if (tickTime > maxTickNanos) maxTickNanos = tickTime;
+            if (tickTime > periodNanos) ++overrunCount;
+
+            ++tickCount;
+            ++tickNumber;
+        }
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+
+    public long getLastTickNanos() {
+        return lastTickNanos;
+    }
+
+    public long getMaxTickNanos() {
+        return maxTickNanos;
+    }
+
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+}
@@ -0,0 +1,69 @@
+package Network;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+
+public class AckInfo {
+    public static final int SACK_BITS = Long.SIZE;
+
+    private final long cumulative;
+    private final long highest;
+    private final long sackBits;
+
+    public AckInfo(long cumulative, long highest, long sackBits) {
+        this.cumulative = cumulative;
+        this.highest = highest;
+        this.sackBits = sackBits;
+    }
+
+    public boolean acknowledges(long seq) {
+        if (seq <= cumulative || seq == highest) return true;
+        if (seq > highest || highest - seq > SACK_BITS) return false;
+
+        return ((sackBits >>> (highest - seq - 1)) & 1) != 0;
+    }
+
+    public long getCumulative() {
+        return cumulative;
+    }
+
+    public long getHighest() {
+        return highest;
+    }
+
+    public long getSackBits() {
+        return sackBits;
+    }
+
+    public byte[] toFieldBytes(int field) {
+        int bodySize = CodedOutputStream.computeUInt64SizeNoTag(cumulative)
+                + CodedOutputStream.computeUInt64SizeNoTag(highest)
+                + CodedOutputStream.computeFixed64SizeNoTag(sackBits);
+
+        byte[] bytes = new byte[CodedOutputStream.computeTagSize(field)
+                + CodedOutputStream.computeUInt32SizeNoTag(bodySize) + bodySize];
+        CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+        try {
+            out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(bodySize);
+            out.writeUInt64NoTag(cumulative);
+            out.writeUInt64NoTag(highest);
+            out.writeFixed64NoTag(sackBits);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write ack info", e);
+        }
+
+        return bytes;
+    }
+
+    public static AckInfo parse(ByteString bytes) throws IOException {
+        CodedInputStream in = bytes.newCodedInput();
+        return new AckInfo(in.readUInt64(), in.readUInt64(), in.readFixed64());
+    }
+}
@@ -0,0 +1,114 @@
+package Network;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AddressCache {
+    private static final int MAX_ENTRIES = 256;
+    private static final long RETRY_DELAY_NANOS = 1_000_000_000L;
+
+    private final ConcurrentHashMap<String, InetAddress> addresses = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> failedUntil = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final ExecutorService resolver = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "address-resolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InetAddress lookup(String host) {
+        InetAddress address = addresses.get(host);
+        if (address != null) return address;
+
+        String name = stripHostName(host);
+        address = parseLiteral(name);
+        if (address != null) {
+            put(addresses, host, address);
+            return address;
+        }
+
+        Long retryAt = failedUntil.get(host);
+        if (retryAt != null) {
+            if (System.nanoTime() - retryAt < 0) return null;
+            failedUntil.remove(host, retryAt);
+        }
+
+        if (pending.add(host)) {
+            resolver.execute(() -> resolve(host, name));
+        }
+        return null;
+    }
+
+    public void close() {
+        resolver.shutdownNow();
+    }
+
+    private void resolve(String host, String name) {
+        try {
+            put(addresses, host, InetAddress.getByName(name));
+        } catch (UnknownHostException e) {
+            put(failedUntil, host, System.nanoTime() + RETRY_DELAY_NANOS);
+        } finally {
+            pending.remove(host);
+        }
+    }
+
+    private static <V> void put(Map<String, V> map, String host, V value) {
+        if (map.size() >= MAX_ENTRIES && !map.containsKey(host)) {
+            Iterator<String> hosts = map.keySet().iterator();
+            if (hosts.hasNext()) {
+                hosts.next();
+                hosts.remove();
+            }
+        }
+        map.put(host, value);
+    }
+
+    private static String stripHostName(String host) {
+        int slash = host.lastIndexOf('/');
+        return (slash >= 0) ? host.substring(slash + 1) : host;
+    }
+
+    private static InetAddress parseLiteral(String name) {
+        try {
+            if (name.indexOf(':') >= 0) {
+                return InetAddress.getByName(name);
+            }
+
+            byte[] bytes = parseIpv4(name);
+            return (bytes == null) ? null : InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static byte[] parseIpv4(String name) {
+        byte[] bytes = new byte[4];
+        int part = 0;
+        int value = -1;
+
+        for (int i = 0; i < name.length(); ++i) {
+            char c = name.charAt(i);
+            if (c == '.') {
+                if (value < 0 || part == 3) return null;
+                bytes[part++] = (byte) value;
+                value = -1;
+            } else if (c >= '0' && c <= '9') {
+                value = (value < 0) ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) return null;
+            } else {
+                return null;
+            }
+        }
+
+        if (value < 0 || part != 3) return null;
+        bytes[3] = (byte) value;
+        return bytes;
+    }
+}
@@ -55,7 +55,7 @@ public class AnnouncementSender extends Thread  {
         annonMesBuilder.setConfig(gameConfig);
         SnakesProto.GamePlayers.Builder gamePlayersBuilder = SnakesProto.GamePlayers.newBuilder();
 
-        for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : snakeGame.getPlayers().entrySet()) {
+        for (Map.Entry<Integer, SnakesProto.GamePlayer> entry : snakeGame.getSnapshot().getPlayers().entrySet()) {
             gamePlayersBuilder.addPlayers(entry.getValue());
         }
 
@@ -0,0 +1,88 @@
+package Network;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DatagramBatch {
+    public static final int MAX_BATCH_SIZE = 1200;
+
+    private static final int BATCH_TAG = (MessageExtensions.BATCH << 3) | WireFormat.WIRETYPE_LENGTH_DELIMITED;
+
+    public static boolean isBatch(ByteBuffer data) {
+        int position = data.position();
+        int tag = 0;
+        int shift = 0;
+
+        while (position < data.limit() && shift < 32) {
+            byte b = data.get(position++);
+            tag |= (b & 0x7F) << shift;
+            if (b >= 0) return tag == BATCH_TAG;
+            shift += 7;
+        }
+
+        return false;
+    }
+
+    public static int entrySize(int length) {
+        return CodedOutputStream.computeUInt32SizeNoTag(BATCH_TAG)
+                + CodedOutputStream.computeUInt32SizeNoTag(length) + length;
+    }
+
+    public static void writeEntry(ByteBuffer batch, ByteBuffer packet) {
+        writeVarint(batch, BATCH_TAG);
+        writeVarint(batch, packet.remaining());
+        batch.put(packet);
+    }
+
+    public static List<ByteBuffer> split(ByteBuffer data) throws InvalidProtocolBufferException {
+        List<ByteBuffer> entries = new ArrayList<>();
+        ByteBuffer in = data.duplicate();
+
+        while (in.hasRemaining()) {
+            if (readVarint(in) != BATCH_TAG) {
+                throw new InvalidProtocolBufferException("Unexpected field in datagram batch");
+            }
+
+            int length = readVarint(in);
+            if (length < 0 || length > in.remaining()) {
+                throw new InvalidProtocolBufferException("Truncated datagram batch");
+            }
+
+            ByteBuffer entry = in.slice();
+            entry.limit(length);
+            entries.add(entry);
+
+            in.position(in.position() + length);
+        }
+
+        return entries;
+    }
+
+    private static void writeVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) throws InvalidProtocolBufferException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new InvalidProtocolBufferException("Truncated datagram batch");
+            }
+
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+
+        throw new InvalidProtocolBufferException("Malformed varint in datagram batch");
+    }
+}
@@ -0,0 +1,80 @@
+package Network;
+
+import Protobuf.SnakesProto;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+
+public class Fragment {
+    public static final int FRAGMENT_SIZE = 1100;
+    public static final int MAX_FRAGMENTS = 256;
+
+    private final int index;
+    private final int count;
+    private final ByteString chunk;
+
+    public Fragment(int index, int count, ByteString chunk) {
+        this.index = index;
+        this.count = count;
+        this.chunk = chunk;
+    }
+
+    public static boolean needsFragmentation(int size) {
+        return size > FRAGMENT_SIZE;
+    }
+
+    public static int countFor(int size) {
+        return (size + FRAGMENT_SIZE - 1) / FRAGMENT_SIZE;
+    }
+
+    public static byte[] header(long msgSeq, int index, int count, int chunkLength) {
+        int bodySize = CodedOutputStream.computeUInt32SizeNoTag(index)
+                + CodedOutputStream.computeUInt32SizeNoTag(count) + chunkLength;
+
+        byte[] header = new byte[CodedOutputStream.computeInt64Size(
+                SnakesProto.GameMessage.MSG_SEQ_FIELD_NUMBER, msgSeq)
+                + CodedOutputStream.computeTagSize(MessageExtensions.FRAGMENT)
+                + CodedOutputStream.computeUInt32SizeNoTag(bodySize) + bodySize - chunkLength];
+        CodedOutputStream out = CodedOutputStream.newInstance(header);
+
+        try {
+            out.writeInt64(SnakesProto.GameMessage.MSG_SEQ_FIELD_NUMBER, msgSeq);
+            out.writeTag(MessageExtensions.FRAGMENT, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(bodySize);
+            out.writeUInt32NoTag(index);
+            out.writeUInt32NoTag(count);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write fragment header", e);
+        }
+
+        return header;
+    }
+
+    public static Fragment parse(ByteString bytes) throws IOException {
+        CodedInputStream in = bytes.newCodedInput();
+        int index = in.readUInt32();
+        int count = in.readUInt32();
+
+        if (count <= 0 || count > MAX_FRAGMENTS || index >= count) {
+            throw new IOException("Bad fragment " + index + "/" + count);
+        }
+
+        return new Fragment(index, count, bytes.substring(in.getTotalBytesRead()));
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public ByteString getChunk() {
+        return chunk;
+    }
+}
@@ -0,0 +1,119 @@
+package Network;
+
+import com.google.protobuf.ByteString;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class FragmentReassembler {
+    private static final int MAX_PENDING_PER_PEER = 8;
+
+    private final long timeoutMs;
+    private final HashMap<NodeInfo, LinkedHashMap<Long, PartialMessage>> pending = new HashMap<>();
+
+    public FragmentReassembler(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public synchronized byte[] add(NodeInfo sender, long msgSeq, Fragment fragment) {
+        long now = System.currentTimeMillis();
+
+        LinkedHashMap<Long, PartialMessage> partials = pending.computeIfAbsent(sender, s -> new LinkedHashMap<>());
+        expire(partials, now);
+
+        PartialMessage partial = partials.get(msgSeq);
+        if (partial == null) {
+            if (partials.size() >= MAX_PENDING_PER_PEER) {
+                Iterator<Long> eldest = partials.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+
+            partial = new PartialMessage(fragment.getCount(), now);
+            partials.put(msgSeq, partial);
+        }
+
+        if (!partial.add(fragment) || !partial.isComplete()) {
+            return null;
+        }
+
+        partials.remove(msgSeq);
+        if (partials.isEmpty()) {
+            pending.remove(sender);
+        }
+
+        return partial.assemble();
+    }
+
+    public synchronized boolean markAckScheduled(NodeInfo sender, long msgSeq) {
+        PartialMessage partial = find(sender, msgSeq);
+        if (partial == null || partial.ackScheduled) return false;
+
+        partial.ackScheduled = true;
+        return true;
+    }
+
+    public synchronized byte[] takeReceived(NodeInfo sender, long msgSeq) {
+        PartialMessage partial = find(sender, msgSeq);
+        if (partial == null) return null;
+
+        partial.ackScheduled = false;
+        return partial.received.toByteArray();
+    }
+
+    public synchronized void removePeer(NodeInfo peer) {
+        pending.remove(peer);
+    }
+
+    private PartialMessage find(NodeInfo sender, long msgSeq) {
+        LinkedHashMap<Long, PartialMessage> partials = pending.get(sender);
+        return (partials == null) ? null : partials.get(msgSeq);
+    }
+
+    private void expire(LinkedHashMap<Long, PartialMessage> partials, long now) {
+        partials.values().removeIf(partial -> now - partial.createdMs > timeoutMs);
+    }
+
+    private static class PartialMessage {
+        private final ByteString[] chunks;
+        private final BitSet received = new BitSet();
+        private final long createdMs;
+        private int size = 0;
+        private boolean ackScheduled = false;
+
+        PartialMessage(int count, long createdMs) {
+            this.chunks = new ByteString[count];
+            this.createdMs = createdMs;
+        }
+
+        boolean add(Fragment fragment) {
+            int index = fragment.getIndex();
+            ByteString chunk = fragment.getChunk();
+
+            if (fragment.getCount() != chunks.length || received.get(index)) return false;
+            if (chunk.size() > Fragment.FRAGMENT_SIZE) return false;
+            if (index < chunks.length - 1 && chunk.size() != Fragment.FRAGMENT_SIZE) return false;
+
+            chunks[index] = chunk;
+            received.set(index);
+            size += chunk.size();
+            return true;
+        }
+
+        boolean isComplete() {
+            return received.cardinality() == chunks.length;
+        }
+
+        byte[] assemble() {
+            byte[] data = new byte[size];
+            int offset = 0;
+            for (ByteString chunk : chunks) {
+                chunk.copyTo(data, offset);
+                offset += chunk.size();
+            }
+            return data;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package Network;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class LivenessTracker {
+    private static final int DETECTOR_WINDOW = 128;
+
+    private final TimingWheel wheel;
+    private final long timeoutNanos;
+    private final long minStdDevMs;
+    private final long acceptablePauseMs;
+    private final double phiThreshold;
+    private final Predicate<NodeInfo> adaptive;
+    private final Consumer<NodeInfo> expiredHandler;
+
+    private final ConcurrentHashMap<NodeInfo, PeerLiveness> peers = new ConcurrentHashMap<>();
+
+    public LivenessTracker(TimingWheel wheel, long timeoutMs, long minStdDevMs, long acceptablePauseMs,
+                           double phiThreshold, Predicate<NodeInfo> adaptive, Consumer<NodeInfo> expiredHandler) {
+        this.wheel = wheel;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        this.minStdDevMs = minStdDevMs;
+        this.acceptablePauseMs = acceptablePauseMs;
+        this.phiThreshold = phiThreshold;
+        this.adaptive = adaptive;
+        this.expiredHandler = expiredHandler;
+    }
+
+    public void touch(NodeInfo peer) {
+        PeerLiveness liveness = peers.get(peer);
+        if (liveness == null) {
+            track(peer);
+            return;
+        }
+
+        liveness.detector.heartbeat(System.nanoTime());
+    }
+
+    public void heartbeat(NodeInfo peer) {
+        PeerLiveness liveness = peers.get(peer);
+        if (liveness != null) {
+            liveness.detector.heartbeat(System.nanoTime());
+        }
+    }
+
+    public void track(NodeInfo peer) {
+        PeerLiveness liveness = new PeerLiveness(new PhiAccrualDetector(DETECTOR_WINDOW, minStdDevMs,
+                acceptablePauseMs, System.nanoTime()));
+        if (peers.putIfAbsent(peer, liveness) == null) {
+            arm(peer, liveness, timeoutNanos);
+        }
+    }
+
+    public boolean isTracked(NodeInfo peer) {
+        return peers.containsKey(peer);
+    }
+
+    public double getSuspicion(NodeInfo peer) {
+        PeerLiveness liveness = peers.get(peer);
+        return (liveness == null || !liveness.detector.isReady()) ? 0 : liveness.detector.phi(System.nanoTime());
+    }
+
+    public void remove(NodeInfo peer) {
+        PeerLiveness liveness = peers.remove(peer);
+        if (liveness != null && liveness.timeout != null) {
+            liveness.timeout.cancel();
+        }
+    }
+
+    private void arm(NodeInfo peer, PeerLiveness liveness, long delayNanos) {
+        liveness.timeout = wheel.schedule(TimeUnit.NANOSECONDS.toMillis(delayNanos) + 1,
+                () -> check(peer, liveness));
+    }
+
+    private void check(NodeInfo peer, PeerLiveness liveness) {
+        if (peers.get(peer) != liveness) return;
+
+        PhiAccrualDetector detector = liveness.detector;
+        long idleNanos = System.nanoTime() - detector.getLastHeartbeatNanos();
+
+        long limitNanos = timeoutNanos;
+        if (detector.isReady()) {
+            long suspicionNanos = detector.suspicionTimeoutNanos(phiThreshold);
+            if (suspicionNanos < limitNanos && (idleNanos < suspicionNanos || adaptive.test(peer))) {
+                limitNanos = suspicionNanos;
+            }
+        }
+
+        if (idleNanos < limitNanos) {
+            arm(peer, liveness, limitNanos - idleNanos);
+            return;
+        }
+
+        if (peers.remove(peer, liveness)) {
+            expiredHandler.accept(peer);
+        }
+    }
+
+    private static class PeerLiveness {
+        private final PhiAccrualDetector detector;
+        private volatile WheelTimeout timeout;
+
+        PeerLiveness(PhiAccrualDetector detector) {
+            this.detector = detector;
+        }
+    }
+}
@@ -3,9 +3,21 @@ package Network;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class MessageCounter {
-    private final AtomicLong counter = new AtomicLong(0);
+    private final AtomicLong counter;
+
+    public MessageCounter() {
+        this(0);
+    }
+
+    public MessageCounter(long initial) {
+        this.counter = new AtomicLong(initial);
+    }
 
     public long getCounter() {
         return counter.incrementAndGet();
     }
+
+    public long peekCounter() {
+        return counter.get();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package Network;
+
+import Protobuf.SnakesProto;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnknownFieldSet;
+
+import java.util.List;
+
+public class MessageExtensions {
+    public static final int DELTA_STATE = 100;
+    public static final int KEYFRAME_REQUEST = 101;
+    public static final int ACK_INFO = 102;
+    public static final int FRAGMENT = 103;
+    public static final int FRAGMENT_ACK = 104;
+    public static final int BATCH = 105;
+    public static final int REPLICA = 106;
+    public static final int FEC_GROUP_SIZE = 107;
+    public static final int PARITY = 108;
+    public static final int TICK_CATCH_UP = 109;
+    public static final int EXTENSIONS = 110;
+
+    public static boolean has(SnakesProto.GameMessage message, int field) {
+        return message.getUnknownFields().hasField(field);
+    }
+
+    public static ByteString getBytes(SnakesProto.GameMessage message, int field) {
+        if (!has(message, field)) return ByteString.EMPTY;
+
+        List<ByteString> values = message.getUnknownFields().getField(field).getLengthDelimitedList();
+        return values.isEmpty() ? ByteString.EMPTY : values.get(0);
+    }
+
+    public static long getVarint(SnakesProto.GameMessage message, int field) {
+        if (!has(message, field)) return 0;
+
+        List<Long> values = message.getUnknownFields().getField(field).getVarintList();
+        return values.isEmpty() ? 0 : values.get(0);
+    }
+
+    public static long getVarint(SnakesProto.GameConfig config, int field) {
+        if (!config.getUnknownFields().hasField(field)) return 0;
+
+        List<Long> values = config.getUnknownFields().getField(field).getVarintList();
+        return values.isEmpty() ? 0 : values.get(0);
+    }
+
+    public static SnakesProto.GameMessage.Builder setBytes(SnakesProto.GameMessage.Builder builder,
+                                                           int field, ByteString value) {
+        return builder.mergeUnknownFields(UnknownFieldSet.newBuilder()
+                .addField(field, UnknownFieldSet.Field.newBuilder().addLengthDelimited(value).build())
+                .build());
+    }
+
+    public static SnakesProto.GameMessage.Builder setVarint(SnakesProto.GameMessage.Builder builder,
+                                                            int field, long value) {
+        return builder.mergeUnknownFields(UnknownFieldSet.newBuilder()
+                .addField(field, UnknownFieldSet.Field.newBuilder().addVarint(value).build())
+                .build());
+    }
+
+    public static SnakesProto.GameConfig.Builder setVarint(SnakesProto.GameConfig.Builder builder,
+                                                           int field, long value) {
+        return builder.mergeUnknownFields(UnknownFieldSet.newBuilder()
+                .addField(field, UnknownFieldSet.Field.newBuilder().addVarint(value).build())
+                .build());
+    }
+}
@@ -1,30 +1,32 @@
 package Network;
 
 import Protobuf.SnakesProto;
-import Logic.Snake;
-import Graphic.ErrorBox;
-import Graphic.GameWindow;
-import com.google.protobuf.InvalidProtocolBufferException;
+import Logic.GameSnapshot;
+import Logic.GameView;
+import Logic.PlayerInput;
+import Logic.StandbyReplica;
+import Logic.StateDelta;
+import Logic.TickListener;
 import Logic.GameLogic;
+import com.google.protobuf.ByteString;
 
+import java.io.IOException;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class NetworkLogic {
+public class NetworkLogic implements PlayerInput, TickListener {
     private UnicastConnection unicastConnection = new UnicastConnection();
 
     private final GameLogic gameLogic;
-    private final GameWindow gameWindow;
+    private final GameView gameWindow;
 
-    private final ConcurrentHashMap<NodeInfo, ConcurrentHashMap<Long, SnakesProto.GameMessage>> messages
-            = new ConcurrentHashMap<>();
-
-    private final ConcurrentHashMap<NodeInfo, Long> nodesTimeout = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Integer, NodeInfo> playersIds = new ConcurrentHashMap<>();
-    private final MessageCounter msgSeqGenerator = new MessageCounter();
-    private final ConcurrentHashMap<NodeInfo, SnakesProto.NodeRole> playersRoles = new ConcurrentHashMap<>();
+    private final PeerRegistry peers = new PeerRegistry(this::createPeerState);
+    private final AddressCache addressCache = new AddressCache();
 
     private NodeInfo master = null;
     private int masterId = -1;
@@ -33,22 +35,55 @@ public class NetworkLogic {
     private int myId;
     private int pingDelay;
     private int nodeTimeout;
+    private long stateDelayNanos;
+    private long ackIntervalNanos;
 
     private boolean becomingViewer = false;
     private boolean wantToExit = false;
 
     private Timer sender;
-    private Timer nodesTimeoutChecker;
-    private Thread receiver;
 
     private SnakesProto.NodeRole nodeRole;
 
-    private final ConcurrentHashMap<NodeInfo, ConcurrentHashMap<Long, Long>> lastIds = new ConcurrentHashMap<>();
+    private static final int KEYFRAME_INTERVAL = 20;
+
+    private int fecGroupSize;
+    private final ParityDecoder parityDecoder = new ParityDecoder();
+    private final AtomicLong recoveredStatePackets = new AtomicLong();
+    private final AtomicLong lostStatePackets = new AtomicLong();
+    private final AtomicLong stateRateReductions = new AtomicLong();
+    private final AtomicLong oversizedMessages = new AtomicLong();
+
+    private static final int WHEEL_TICK_MS = 5;
+    private static final int WHEEL_SIZE = 512;
+    private static final int MIN_RTO_MS = 20;
+    private static final int MAX_RETRANSMITS = 8;
+    private final TimingWheel retransmitWheel = new TimingWheel("retransmit-wheel", WHEEL_TICK_MS, WHEEL_SIZE);
+
+    private static final int DELAYED_ACK_MS = 20;
+    private static final byte[] NO_TRAILER = new byte[0];
+
+    private FragmentReassembler fragmentReassembler;
+
+    private static final int LIVENESS_TICK_MS = 10;
+    private final TimingWheel livenessWheel = new TimingWheel("liveness-wheel", LIVENESS_TICK_MS, WHEEL_SIZE);
+    private LivenessTracker livenessTracker;
+
+    private static final double PHI_THRESHOLD = 8.0;
+    private static final double PHI_PROBE_THRESHOLD = 3.0;
 
-    public NetworkLogic(GameLogic gameLogic, SnakesProto.GameConfig gameConfig, SnakesProto.NodeRole nodeRole) {
+    private volatile StandbyReplica standbyReplica;
+    private volatile long lastMasterStateNanos = 0;
+    private volatile long failoverStartNanos = 0;
+    private volatile long failoverDetectedNanos = 0;
+    private volatile long lastFailoverDetectionMs = -1;
+    private volatile long lastFailoverTakeoverMs = -1;
+
+    public NetworkLogic(GameLogic gameLogic, GameView gameView, SnakesProto.GameConfig gameConfig,
+                        SnakesProto.NodeRole nodeRole) {
         this.nodeRole = nodeRole;
         this.gameLogic = gameLogic;
-        gameWindow = gameLogic.getGameWindow();
+        this.gameWindow = gameView;
 
         Init(gameConfig);
     }
@@ -56,21 +91,20 @@ public class NetworkLogic {
     private void Init(SnakesProto.GameConfig gameConfig) {
         pingDelay = gameConfig.getPingDelayMs();
         nodeTimeout = gameConfig.getNodeTimeoutMs();
+        stateDelayNanos = TimeUnit.MILLISECONDS.toNanos(gameConfig.getStateDelayMs());
+        ackIntervalNanos = TimeUnit.MILLISECONDS.toNanos(pingDelay);
+        fecGroupSize = (int) MessageExtensions.getVarint(gameConfig, MessageExtensions.FEC_GROUP_SIZE);
+        if (!Parity.isValidGroupSize(fecGroupSize)) {
+            gameWindow.showError("Invalid FEC group size " + fecGroupSize + ", parity packets are disabled");
+            fecGroupSize = 0;
+        }
+        fragmentReassembler = new FragmentReassembler(nodeTimeout);
+        livenessTracker = new LivenessTracker(livenessWheel, nodeTimeout, pingDelay, 2L * pingDelay,
+                PHI_THRESHOLD, peer -> peer.equals(master) || peer.equals(deputy), this::onPeerExpired);
 
-        receiver = new Thread(() ->
-        {
-            unicastConnection.setSoTimeout(pingDelay);
-
-            while (!Thread.interrupted()) {
-                DatagramPacket datagramPacket;
-                datagramPacket = unicastConnection.receivePacket();
-                if (datagramPacket != null) {
-                    proccessedMessage(datagramPacket);
-                }
-            }
-        });
-
-        receiver.start();
+        unicastConnection.start(this::proccessedMessage);
+        retransmitWheel.start();
+        livenessWheel.start();
 
         sender = new Timer();
         sender.scheduleAtFixedRate(
@@ -78,310 +112,178 @@ public class NetworkLogic {
                     @Override
                     public void run() {
                         if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                            for (Map.Entry<Integer, NodeInfo> entry : playersIds.entrySet()) {
-                                if (entry.getKey() == myId) {
+                            for (int playerId : peers.getPlayerIds()) {
+                                NodeInfo peer = peers.getPlayerPeer(playerId);
+                                if (playerId == myId || peer == null) {
                                     continue;
                                 }
 
-                                if (!messages.containsKey(entry.getValue())) {
-                                    messages.put(entry.getValue(), new ConcurrentHashMap<>());
-                                }
-                                if (messages.get(entry.getValue()).size() == 0) {
-                                    SnakesProto.GameMessage newPing = createPing();
-                                    messages.get(entry.getValue()).put(newPing.getMsgSeq(), newPing);
+                                if (peers.getState(peer).getOutbox().isEmpty() && !sentStateRecently(peer)) {
+                                    sendAndStoreMessage(peer, createPing(peer));
                                 }
                             }
                         } else {
                             if (master == null) {
                                 return;
                             }
-                            if (!messages.containsKey(master))
-                                messages.put(master, new ConcurrentHashMap<>());
-                            if (messages.get(master).size() == 0) {
-                                SnakesProto.GameMessage newPing = createPing();
-                                messages.get(master).put(newPing.getMsgSeq(), newPing);
-                            }
-                        }
-
-                        for (Map.Entry<NodeInfo, ConcurrentHashMap<Long, SnakesProto.GameMessage>>
-                                firstEntry : messages.entrySet()) {
-
-                            for (Map.Entry<Long, SnakesProto.GameMessage>
-                                    secondEntry : firstEntry.getValue().entrySet()) {
-
-                                byte[] message = secondEntry.getValue().toByteArray();
-                                unicastConnection.sendPacket(new DatagramPacket(message, 0, message.length,
-                                        firstEntry.getKey().getIp(), firstEntry.getKey().getPort()));
+                            if (peers.getState(master).getOutbox().isEmpty()
+                                    || livenessTracker.getSuspicion(master) > PHI_PROBE_THRESHOLD) {
+                                sendAndStoreMessage(master, createPing(master));
                             }
                         }
-
                     }
                 }, 0, pingDelay);
+    }
 
-        nodesTimeoutChecker = new Timer();
-        nodesTimeoutChecker.scheduleAtFixedRate(new TimerTask() {
-            private final ArrayList<NodeInfo> timeoutedHosts = new ArrayList<>();
-
-            @Override
-            public void run() {
-                boolean hasDeputy = false;
-                long timeNow = System.currentTimeMillis();
-                for (Map.Entry<NodeInfo, Long> entry : nodesTimeout.entrySet()) {
-                    if (playersRoles.get(entry.getKey()) == SnakesProto.NodeRole.DEPUTY) {
-                        hasDeputy = true;
-                    }
-                    if (timeNow - entry.getValue() > nodeTimeout) {
-                        timeoutedHosts.add(entry.getKey());
-                    }
-                }
+    private void onPeerExpired(NodeInfo hi) {
+        boolean hasDeputy = false;
+        for (int handle = 0; handle < peers.size(); ++handle) {
+            NodeInfo peer = peers.getPeer(handle);
+            if (peer == null) {
+                continue;
+            }
+            if (peers.getState(peer).getRole() == SnakesProto.NodeRole.DEPUTY
+                    && (peer.equals(hi) || livenessTracker.isTracked(peer))) {
+                hasDeputy = true;
+            }
+        }
 
-                boolean masterDeadFlag = false;
-                boolean deputyDeadFlag = false;
+        SnakesProto.NodeRole killedNodeRole = peers.getState(hi).getRole();
 
-                for (NodeInfo hi : timeoutedHosts) {
-                    SnakesProto.NodeRole killedNodeRole = playersRoles.get(hi);
+        if (nodeRole == SnakesProto.NodeRole.MASTER) {
+            int hiId = peers.getPlayerId(hi);
+            gameLogic.removePlayer(hiId);
+        }
 
-                    if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                        int hiId = findPlayerIdByHostInfo(hi);
-                        if (hiId != -1) {
-                            HashMap<Integer, Snake> snakes = gameLogic.getSnakes();
-                            if (snakes.containsKey(hiId)) {
-                                snakes.get(hiId).setSnakeState(SnakesProto.GameState.Snake.SnakeState.ZOMBIE);
-                            }
-                        }
+        PeerState expired = peers.release(peers.intern(hi));
+        unicastConnection.removePeer(hi);
+        parityDecoder.removePeer(hi);
+        fragmentReassembler.removePeer(hi);
 
-                        gameLogic.getPlayers().remove(hiId);
-                    }
+        if (killedNodeRole == SnakesProto.NodeRole.MASTER) {
+            NodeInfo prevMaster = master;
 
-                    playersRoles.remove(hi);
-                    lastIds.remove(hi);
-                    nodesTimeout.remove(hi);
+            if (nodeRole == SnakesProto.NodeRole.VIEWER && !hasDeputy) {
+                gameWindow.terminate();
+            } else if (nodeRole == SnakesProto.NodeRole.DEPUTY) {
+                becameMaster();
+            } else {
+                findNewMaster();
+            }
 
-                    if (killedNodeRole != SnakesProto.NodeRole.MASTER) {
-                        messages.remove(hi);
-                    } else {
-                        masterDeadFlag = true;
-                    }
+            Map<Long, OutgoingMessage> prevOutbox = (prevMaster == null || prevMaster.equals(hi))
+                    ? expired.takeOutbox() : peers.getState(prevMaster).takeOutbox();
 
-                    if (killedNodeRole == SnakesProto.NodeRole.DEPUTY) {
-                        deputyDeadFlag = true;
+            if (master == null) {
+                for (OutgoingMessage outgoing : prevOutbox.values()) {
+                    SnakesProto.GameMessage message = outgoing.getMessage();
+                    if (message.hasSteer()) {
+                        gameLogic.changeSnakeDir(myId, message.getSteer().getDirection());
                     }
                 }
+            } else {
+                resendOutbox(master, prevOutbox);
+            }
+        }
 
-                NodeInfo prevMaster = master;
-
-                if (masterDeadFlag) {
-                    if (nodeRole == SnakesProto.NodeRole.VIEWER && !hasDeputy) {
-                        gameWindow.terminate();
-                    } else if (nodeRole == SnakesProto.NodeRole.DEPUTY) {
-                        becameMaster();
-                    } else if (!deputyDeadFlag) {
-                        findNewMaster();
-                    }
-
-                    if (master == null) {
-                        for (Map.Entry<Long, SnakesProto.GameMessage> entry : messages.get(prevMaster).entrySet()) {
-                            if (entry.getValue().hasSteer()) {
-                                gameLogic.changeSnakeDir(myId, entry.getValue().getSteer().getDirection());
-                            }
-                        }
-                    } else {
-                        messages.put(master, messages.get(prevMaster));
-                    }
-
-                    messages.remove(prevMaster);
-                }
+        if (nodeRole == SnakesProto.NodeRole.MASTER && killedNodeRole == SnakesProto.NodeRole.DEPUTY) {
+            changeDeputy();
+        }
+    }
 
-                if (nodeRole == SnakesProto.NodeRole.MASTER && deputyDeadFlag) {
-                    changeDeputy();
+    private void proccessedMessage(ByteBuffer data, InetSocketAddress address) {
+        try {
+            if (DatagramBatch.isBatch(data)) {
+                for (ByteBuffer entry : DatagramBatch.split(data)) {
+                    proccessedMessage(entry, address);
                 }
+                return;
+            }
 
-                timeoutedHosts.clear();
+            int packetOffset = data.position();
+            int packetLength = data.remaining();
 
-                final long timeNow2 = System.currentTimeMillis();
-                for (Map.Entry<NodeInfo, ConcurrentHashMap<Long, Long>> a : lastIds.entrySet()) {
-                    a.getValue().entrySet().removeIf(b -> (b.getValue() - timeNow2) > nodeTimeout);
-                }
+            SnakesProto.GameMessage mess = SnakesProto.GameMessage.parseFrom(data);
 
+            NodeInfo sender = peers.lookup(address);
+            if (sender == null) {
+                if (!mess.hasJoin()) return;
+                sender = peers.intern(address);
             }
-        }, 0, nodeTimeout);
+            livenessTracker.heartbeat(sender);
+            ReplayWindow replayWindow = peers.getState(sender).getReplayWindow();
 
-    }
+            if (MessageExtensions.has(mess, MessageExtensions.EXTENSIONS)
+                    || MessageExtensions.has(mess, MessageExtensions.ACK_INFO)) {
+                peers.getState(sender).setExtensionsSupported();
+                unicastConnection.setBatching(sender, true);
+            }
 
-    private void proccessedMessage(DatagramPacket datagramPacket) {
-        try {
-            SnakesProto.GameMessage mess =
-                    SnakesProto.GameMessage.parseFrom(ByteBuffer.wrap(datagramPacket.getData(), 0,
-                            datagramPacket.getLength()));
+            if (!mess.hasAck()) {
+                processAckInfo(mess, sender);
+            }
 
-            NodeInfo sender = new NodeInfo(datagramPacket.getAddress(), datagramPacket.getPort());
+            if (MessageExtensions.has(mess, MessageExtensions.PARITY)) {
+                processParity(mess, sender, replayWindow, address);
+                return;
+            }
 
-            if (mess.hasPing()) {
-                if (!lastIds.containsKey(sender) || !lastIds.get(sender).contains(mess.getMsgSeq())) {
-                    if (!lastIds.containsKey(sender)) {
-                        lastIds.put(sender, new ConcurrentHashMap<>());
-                    }
+            if (MessageExtensions.has(mess, MessageExtensions.FRAGMENT)) {
+                processFragment(mess, sender, replayWindow, address);
+                return;
+            }
 
-                    lastIds.get(sender).put(mess.getMsgSeq(), System.currentTimeMillis());
-                }
+            if (mess.hasState() || MessageExtensions.has(mess, MessageExtensions.DELTA_STATE)) {
+                parityDecoder.cache(sender, mess.getMsgSeq(), data, packetOffset, packetLength);
+            }
 
-                sendAck(mess, sender);
+            if (mess.hasPing()) {
+                acknowledge(replayWindow, mess, sender);
 
             } else if (mess.hasSteer()) {
-                if (!lastIds.containsKey(sender) || !lastIds.get(sender).contains(mess.getMsgSeq())) {
-                    if (!lastIds.containsKey(sender)) {
-                        lastIds.put(sender, new ConcurrentHashMap<>());
-                    }
-
-                    lastIds.get(sender).put(mess.getMsgSeq(), System.currentTimeMillis());
-
+                if (!replayWindow.contains(mess.getMsgSeq())) {
                     gameLogic.changeSnakeDir(mess.getSenderId(), mess.getSteer().getDirection());
-                }
 
-                sendAck(mess, sender);
-            } else if (mess.hasAck()) {
-                if (!messages.containsKey(sender)) {
-                    return;
-                }
-
-                if (!messages.get(sender).containsKey(mess.getMsgSeq())) {
-                    return;
+                    if (nodeRole == SnakesProto.NodeRole.MASTER) {
+                        replicateToDeputy();
+                    }
                 }
 
-                nodesTimeout.put(sender, System.currentTimeMillis());
-
-                SnakesProto.GameMessage messThatAcked = messages.get(sender).get(mess.getMsgSeq());
-
-                if (messThatAcked.hasJoin()) {
-                    master = sender;
-                    playersRoles.put(sender, SnakesProto.NodeRole.MASTER);
-                    playersIds.put(mess.getSenderId(), master);
-                    gameLogic.getGameWindow().setPlayerID(mess.getReceiverId());
-
-                    SnakesProto.GameMessage newPingMsg = createPing();
-
-                    sendAndStoreMessage(master, newPingMsg);
-                    masterId = mess.getSenderId();
-
-                    myId = mess.getReceiverId();
-
-                } else if (messThatAcked.hasRoleChange()) {
-                    SnakesProto.GameMessage.RoleChangeMsg rlChgMsg = messThatAcked.getRoleChange();
-
-                    if (becomingViewer && messThatAcked.getSenderId() == myId
-                            && rlChgMsg.hasSenderRole()
-                            && rlChgMsg.getSenderRole() == SnakesProto.NodeRole.VIEWER) {
-
-                        becomingViewer = false;
-
-                        if (wantToExit) {
-                            gameWindow.terminate();
-                        }
+                acknowledge(replayWindow, mess, sender);
+            } else if (mess.hasAck()) {
+                OutgoingMessage acked = peers.getState(sender).getOutbox().get(mess.getMsgSeq());
+
+                if (MessageExtensions.has(mess, MessageExtensions.KEYFRAME_REQUEST)) {
+                    requestKeyframe(sender);
+                } else if (acked != null) {
+                    if (MessageExtensions.has(mess, MessageExtensions.FRAGMENT_ACK)) {
+                        acked.ackFragments(BitSet.valueOf(MessageExtensions.getBytes(mess,
+                                MessageExtensions.FRAGMENT_ACK).toByteArray()));
+                    } else {
+                        handleAck(sender, mess.getMsgSeq(), acked, mess);
                     }
+                } else if (!MessageExtensions.has(mess, MessageExtensions.FRAGMENT_ACK)) {
+                    PeerState state = peers.getState(sender);
+                    state.mergeAckedStateOrder(state.getSentStates().takeAcked(mess.getMsgSeq()));
                 }
 
-                messages.get(sender).remove(mess.getMsgSeq());
+                processAckInfo(mess, sender);
 
             } else if (mess.hasState()) {
-                if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                    sendAck(mess, sender);
-                    return;
+                boolean duplicate = replayWindow.contains(mess.getMsgSeq());
+                if (peers.getState(sender).supportsExtensions()) {
+                    replayWindow.add(mess.getMsgSeq());
+                } else {
+                    acknowledge(replayWindow, mess, sender);
                 }
 
-                if (!lastIds.containsKey(sender) || !lastIds.get(sender).contains(mess.getMsgSeq())) {
-                    if (!lastIds.containsKey(sender)) {
-                        lastIds.put(sender, new ConcurrentHashMap<>());
-                    }
-
-                    lastIds.get(sender).put(mess.getMsgSeq(), System.currentTimeMillis());
-
-                    SnakesProto.GameState gameState = mess.getState().getState();
-
-                    if (gameState.getStateOrder() < gameLogic.getGameStateCounter()) {
-                        sendAck(mess, sender);
-                        return;
-                    }
-                    gameLogic.loadState(gameState, sender);
-                    gameLogic.getGameWindow().repaint();
-
-
-                    Map<Integer, Boolean> hasPlayer = new HashMap<>();
-
-                    for (SnakesProto.GamePlayer player : gameState.getPlayers().getPlayersList()) {
-                        if (player.getId() == myId) {
-                            continue;
-                        }
-
-                        NodeInfo hi;
-                        if (!playersIds.containsKey(player.getId())) {
-                            if (!player.getIpAddress().equals("")) {
-                                try {
-                                    hi = new NodeInfo(InetAddress.getByName(player.getIpAddress()), player.getPort());
-                                } catch (UnknownHostException e) {
-                                    System.out.println("Cannot decode ip from: " + player.getIpAddress());
-                                    continue;
-                                }
-                            } else {
-                                hi = sender;
-                            }
-                        } else {
-                            hi = playersIds.get(player.getId());
-                        }
-
-                        playersIds.put(player.getId(), hi);
-                        playersRoles.put(hi, player.getRole());
-                        if (player.getRole() == SnakesProto.NodeRole.DEPUTY) {
-                            deputyId = player.getId();
-                            deputy = hi;
-                        } else if (player.getRole() == SnakesProto.NodeRole.MASTER) {
-                            masterId = player.getId();
-                            master = hi;
-                        }
-
-
-                        hasPlayer.put(player.getId(), true);
-                    }
-
-                    Iterator<Map.Entry<Integer, NodeInfo>> it = playersIds.entrySet().iterator();
-                    while (it.hasNext()) {
-                        Map.Entry<Integer, NodeInfo> entry = it.next();
-                        if (hasPlayer.containsKey(entry.getKey()) && !hasPlayer.get(entry.getKey())) {
-                            playersIds.remove(entry.getKey());
-                            playersRoles.remove(entry.getValue());
-                            messages.remove(entry.getValue());
-                            nodesTimeout.remove(entry.getValue());
-                        }
-                    }
-
-                    boolean meDead = gameLogic.isDead(myId);
-
-                    if (meDead && (nodeRole != SnakesProto.NodeRole.VIEWER)) {
-                        SnakesProto.GameMessage.RoleChangeMsg.Builder roleChangeMsg =
-                                SnakesProto.GameMessage.RoleChangeMsg.newBuilder()
-                                        .setReceiverRole(SnakesProto.NodeRole.MASTER)
-                                        .setSenderRole(SnakesProto.NodeRole.VIEWER);
-
-                        SnakesProto.GameMessage message = SnakesProto.GameMessage.newBuilder()
-                                .setRoleChange(roleChangeMsg)
-                                .setSenderId(myId)
-                                .setReceiverId(masterId)
-                                .setMsgSeq(msgSeqGenerator.getCounter())
-                                .build();
-
-                        sendAndStoreMessage(master, message);
-                    }
-
+                if (!duplicate && nodeRole != SnakesProto.NodeRole.MASTER) {
+                    processState(mess.getState().getState(), sender);
                 }
 
-                sendAck(mess, sender);
-
             } else if (mess.hasJoin()) {
-                if (!lastIds.containsKey(sender) || !lastIds.get(sender).contains(mess.getMsgSeq())) {
-                    if (!lastIds.containsKey(sender)) {
-                        lastIds.put(sender, new ConcurrentHashMap<>());
-                    }
-
-                    lastIds.get(sender).put(mess.getMsgSeq(), System.currentTimeMillis());
+                if (!replayWindow.contains(mess.getMsgSeq())) {
+                    replayWindow.add(mess.getMsgSeq());
 
                     SnakesProto.GameMessage.JoinMsg joinMsg = mess.getJoin();
 
@@ -400,22 +302,19 @@ public class NetworkLogic {
                     int newPlayerId = gameLogic.addPlayer(mess.getJoin().getName(),
                             newNodeRole, newPlayerType, sender.getIp().getHostAddress(), sender.getPort());
 
-                    if (messages.get(sender) == null) {
-                        messages.put(sender, new ConcurrentHashMap<>());
-                    }
-
                     if (newPlayerId == -1) {
                         SnakesProto.GameMessage errorMes = SnakesProto.GameMessage.newBuilder()
+                                .setMsgSeq(nextSeq(sender))
                                 .setError(SnakesProto.GameMessage.ErrorMsg.newBuilder()
                                         .setErrorMessage("No place for you"))
                                 .build();
 
-                        messages.get(sender).put(msgSeqGenerator.getCounter(), errorMes);
+                        sendAndStoreMessage(sender, errorMes);
                     } else {
 
-                        playersRoles.put(sender, newNodeRole);
+                        peers.getState(sender).setRole(newNodeRole);
 
-                        playersIds.put(newPlayerId, sender);
+                        peers.bindPlayer(newPlayerId, sender);
 
                         sendAck(mess, sender);
 
@@ -424,7 +323,7 @@ public class NetworkLogic {
                             deputyId = newPlayerId;
 
                             SnakesProto.GameMessage roleChangeMess = SnakesProto.GameMessage.newBuilder()
-                                    .setMsgSeq(msgSeqGenerator.getCounter())
+                                    .setMsgSeq(nextSeq(sender))
                                     .setReceiverId(newPlayerId)
                                     .setSenderId(myId)
                                     .setRoleChange(SnakesProto.GameMessage.RoleChangeMsg.newBuilder()
@@ -432,64 +331,56 @@ public class NetworkLogic {
                                             .setReceiverRole(SnakesProto.NodeRole.DEPUTY))
                                     .build();
 
-                            playersRoles.put(sender, SnakesProto.NodeRole.DEPUTY);
-                            gameLogic.getPlayers().put(newPlayerId,
-                                    gameLogic.getPlayers().get(newPlayerId).toBuilder().
-                                            setRole(SnakesProto.NodeRole.DEPUTY).build());
+                            peers.getState(sender).setRole(SnakesProto.NodeRole.DEPUTY);
+                            gameLogic.setPlayerRole(newPlayerId, SnakesProto.NodeRole.DEPUTY);
 
                             sendAndStoreMessage(sender, roleChangeMess);
                         }
                     }
-                } else if (playersRoles.containsKey(sender)) {
+                } else if (peers.getState(sender).getRole() != null) {
                     sendAck(mess, sender);
                 }
 
             } else if (mess.hasError()) {
-                if (!lastIds.containsKey(sender) || !lastIds.get(sender).contains(mess.getMsgSeq())) {
-                    if (!lastIds.containsKey(sender)) {
-                        lastIds.put(sender, new ConcurrentHashMap<>());
-                    }
-
-                    lastIds.get(sender).put(mess.getMsgSeq(), System.currentTimeMillis());
+                if (!replayWindow.contains(mess.getMsgSeq())) {
+                    replayWindow.add(mess.getMsgSeq());
 
-                    ErrorBox.display(mess.getError().getErrorMessage());
+                    gameWindow.showError(mess.getError().getErrorMessage());
 
                     gameWindow.terminate();
                 }
 
-                sendAck(mess, sender);
+                acknowledge(replayWindow, mess, sender);
             } else if (mess.hasRoleChange()) {
-                if (!lastIds.containsKey(sender) || !lastIds.get(sender).contains(mess.getMsgSeq())) {
+                if (!replayWindow.contains(mess.getMsgSeq())) {
                     if (mess.hasReceiverId() && mess.hasSenderId()) {
 
                         SnakesProto.GameMessage.RoleChangeMsg roleChangeMsg = mess.getRoleChange();
 
-                        var players = gameLogic.getPlayers();
-
-                        if (roleChangeMsg.hasReceiverRole() && players.containsKey(mess.getReceiverId())) {
-                            NodeInfo messReceiver = playersIds.get(mess.getReceiverId());
+                        if (roleChangeMsg.hasReceiverRole() && gameLogic.hasPlayer(mess.getReceiverId())) {
+                            NodeInfo messReceiver = peers.getPlayerPeer(mess.getReceiverId());
                             if (messReceiver != null) {
-                                playersRoles.put(messReceiver, roleChangeMsg.getReceiverRole());
+                                peers.getState(messReceiver).setRole(roleChangeMsg.getReceiverRole());
                             }
 
                             if (mess.getReceiverId() == myId) changeRole(roleChangeMsg.getReceiverRole());
 
                             if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                                players.put(mess.getReceiverId(), players.get(mess.getReceiverId()).toBuilder().setRole(roleChangeMsg.getReceiverRole()).build());
+                                gameLogic.setPlayerRole(mess.getReceiverId(), roleChangeMsg.getReceiverRole());
                                 changeDeputy();
                             }
                         } else {
                             return;
                         }
 
-                        if (roleChangeMsg.hasSenderRole() && players.containsKey(mess.getSenderId())) {
-                            NodeInfo messSender = playersIds.get(mess.getSenderId());
+                        if (roleChangeMsg.hasSenderRole() && gameLogic.hasPlayer(mess.getSenderId())) {
+                            NodeInfo messSender = peers.getPlayerPeer(mess.getSenderId());
                             if (messSender != null) {
-                                playersRoles.put(messSender, roleChangeMsg.getSenderRole());
+                                peers.getState(messSender).setRole(roleChangeMsg.getSenderRole());
                             }
 
                             if (nodeRole == SnakesProto.NodeRole.MASTER) {
-                                players.put(mess.getSenderId(), players.get(mess.getSenderId()).toBuilder().setRole(roleChangeMsg.getSenderRole()).build());
+                                gameLogic.setPlayerRole(mess.getSenderId(), roleChangeMsg.getSenderRole());
                                 if (roleChangeMsg.getSenderRole() == SnakesProto.NodeRole.VIEWER) {
                                     changeDeputy();
                                 }
@@ -503,24 +394,311 @@ public class NetworkLogic {
                             }
                         }
 
-                        if (!lastIds.containsKey(sender)) {
-                            lastIds.put(sender, new ConcurrentHashMap<>());
-                        }
-
-                        lastIds.get(sender).put(mess.getMsgSeq(), System.currentTimeMillis());
+                        replayWindow.add(mess.getMsgSeq());
 
                     }
 
                 }
 
-                sendAck(mess, sender);
+                acknowledge(replayWindow, mess, sender);
+            } else if (MessageExtensions.has(mess, MessageExtensions.DELTA_STATE)) {
+                if (replayWindow.contains(mess.getMsgSeq())) {
+                    return;
+                }
+
+                ByteString delta = MessageExtensions.getBytes(mess, MessageExtensions.DELTA_STATE);
+                if (nodeRole == SnakesProto.NodeRole.MASTER
+                        || StateDelta.getStateOrder(delta) < gameLogic.getGameStateCounter()) {
+                    replayWindow.add(mess.getMsgSeq());
+                    return;
+                }
+
+                SnakesProto.GameState gameState;
+                try {
+                    gameState = gameLogic.decodeDelta(delta);
+                } catch (IOException | RuntimeException e) {
+                    gameState = null;
+                }
+
+                if (gameState == null) {
+                    sendKeyframeRequest(mess, sender);
+                    return;
+                }
+
+                replayWindow.add(mess.getMsgSeq());
+
+                processState(gameState, sender);
+            } else if (MessageExtensions.has(mess, MessageExtensions.REPLICA)) {
+                if (!replayWindow.contains(mess.getMsgSeq())) {
+                    StandbyReplica replica = StandbyReplica.parse(MessageExtensions.getBytes(mess,
+                            MessageExtensions.REPLICA));
+
+                    if (standbyReplica == null || replica.getStateOrder() >= standbyReplica.getStateOrder()) {
+                        standbyReplica = replica;
+                    }
+                }
+
+                acknowledge(replayWindow, mess, sender);
             }
 
-        } catch (InvalidProtocolBufferException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    private void handleAck(NodeInfo sender, long msgSeq, OutgoingMessage acked, SnakesProto.GameMessage mess)
+            throws IOException {
+        if (!peers.getState(sender).getOutbox().remove(msgSeq, acked)) {
+            return;
+        }
+
+        livenessTracker.touch(sender);
+
+        SnakesProto.GameMessage messThatAcked = acked.getMessage();
+
+        onAcked(sender, acked);
+
+        if (messThatAcked.hasJoin()) {
+            master = sender;
+            peers.getState(sender).setRole(SnakesProto.NodeRole.MASTER);
+            peers.bindPlayer(mess.getSenderId(), master);
+            gameWindow.setPlayerID(mess.getReceiverId());
+
+            SnakesProto.GameMessage newPingMsg = createPing(sender);
+
+            sendAndStoreMessage(master, newPingMsg);
+            masterId = mess.getSenderId();
+
+            myId = mess.getReceiverId();
+
+        } else if (messThatAcked.hasRoleChange()) {
+            SnakesProto.GameMessage.RoleChangeMsg rlChgMsg = messThatAcked.getRoleChange();
+
+            if (becomingViewer && messThatAcked.getSenderId() == myId
+                    && rlChgMsg.hasSenderRole()
+                    && rlChgMsg.getSenderRole() == SnakesProto.NodeRole.VIEWER) {
+
+                becomingViewer = false;
+
+                if (wantToExit) {
+                    gameWindow.terminate();
+                }
+            }
+        }
+    }
+
+    private void processFragment(SnakesProto.GameMessage mess, NodeInfo sender, ReplayWindow replayWindow,
+                                 InetSocketAddress address) throws IOException {
+        if (replayWindow.contains(mess.getMsgSeq())) {
+            acknowledge(replayWindow, mess, sender);
+            return;
+        }
+
+        Fragment fragment = Fragment.parse(MessageExtensions.getBytes(mess, MessageExtensions.FRAGMENT));
+        byte[] data = fragmentReassembler.add(sender, mess.getMsgSeq(), fragment);
+
+        if (data != null) {
+            proccessedMessage(ByteBuffer.wrap(data), address);
+        } else if (fragmentReassembler.markAckScheduled(sender, mess.getMsgSeq())) {
+            retransmitWheel.schedule(DELAYED_ACK_MS, () -> flushFragmentAck(sender, mess.getMsgSeq()));
+        }
+    }
+
+    private void requestKeyframe(NodeInfo peer) {
+        PeerState state = peers.getState(peer);
+        state.clearAckedStateOrder();
+        state.getSentStates().clear();
+    }
+
+    private boolean sentStateRecently(NodeInfo peer) {
+        long sentNanos = peers.getState(peer).getLastStateSentNanos();
+        return sentNanos != 0 && System.nanoTime() - sentNanos < TimeUnit.MILLISECONDS.toNanos(pingDelay);
+    }
+
+    private void processParity(SnakesProto.GameMessage mess, NodeInfo sender, ReplayWindow replayWindow,
+                               InetSocketAddress address) throws IOException {
+        Parity parity = Parity.parse(MessageExtensions.getBytes(mess, MessageExtensions.PARITY));
+
+        // Parity follows the last state of its group, so an earlier missing state is already superseded.
+        // Only the last one is worth rebuilding, and it only counts as recovered once it is applied.
+        int missing = parityDecoder.countMissing(sender, parity, replayWindow);
+        if (missing == 1 && !replayWindow.contains(parity.getMsgSeq(parity.getCount() - 1))) {
+            byte[] packet = parityDecoder.recover(sender, parity);
+            if (packet != null) {
+                int stateOrder = gameLogic.getGameStateCounter();
+                proccessedMessage(ByteBuffer.wrap(packet), address);
+
+                if (gameLogic.getGameStateCounter() > stateOrder) {
+                    recoveredStatePackets.incrementAndGet();
+                } else {
+                    lostStatePackets.incrementAndGet();
+                }
+                return;
+            }
+        }
+
+        lostStatePackets.addAndGet(missing);
+    }
+
+    private void flushFragmentAck(NodeInfo peer, long msgSeq) {
+        byte[] received = fragmentReassembler.takeReceived(peer, msgSeq);
+        if (received == null) return;
+
+        SnakesProto.GameMessage.Builder ack = SnakesProto.GameMessage.newBuilder()
+                .setMsgSeq(msgSeq)
+                .setAck(SnakesProto.GameMessage.AckMsg.newBuilder().build())
+                .setSenderId(myId);
+        MessageExtensions.setBytes(ack, MessageExtensions.FRAGMENT_ACK, ByteString.copyFrom(received));
+
+        sendMessage(peer, ack.build());
+    }
+
+    private void processAckInfo(SnakesProto.GameMessage mess, NodeInfo sender) throws IOException {
+        if (!MessageExtensions.has(mess, MessageExtensions.ACK_INFO)) return;
+
+        AckInfo ackInfo = AckInfo.parse(MessageExtensions.getBytes(mess, MessageExtensions.ACK_INFO));
+
+        PeerState state = peers.getState(sender);
+        state.mergeAckedStateOrder(state.getSentStates().takeAcked(ackInfo));
+
+        ConcurrentHashMap<Long, OutgoingMessage> outbox = state.getOutbox();
+
+        for (Map.Entry<Long, OutgoingMessage> entry : outbox.entrySet()) {
+            if (ackInfo.acknowledges(entry.getKey()) && !entry.getValue().getMessage().hasJoin()) {
+                handleAck(sender, entry.getKey(), entry.getValue(), mess);
+            }
+        }
+    }
+
+    private void acknowledge(ReplayWindow replayWindow, SnakesProto.GameMessage mess, NodeInfo sender) {
+        replayWindow.add(mess.getMsgSeq());
+
+        PeerState state = peers.getState(sender);
+        if (!state.supportsExtensions()) {
+            state.addUnackedSeq(mess.getMsgSeq());
+        }
+
+        AtomicBoolean pending = state.getPendingAck();
+        if (pending.compareAndSet(false, true)) {
+            retransmitWheel.schedule(DELAYED_ACK_MS, () -> flushAck(sender));
+        }
+    }
+
+    private void flushAck(NodeInfo peer) {
+        PeerState state = peers.getState(peer);
+        if (!state.getPendingAck().getAndSet(false)) return;
+
+        if (!state.supportsExtensions()) {
+            for (long msgSeq : state.takeUnackedSeqs()) {
+                sendMessage(peer, createAck(peer, msgSeq));
+            }
+            return;
+        }
+
+        ReplayWindow replayWindow = state.getReplayWindow();
+        if (replayWindow.getAckInfo() == null) return;
+
+        sendMessage(peer, createAck(peer, replayWindow.getAckInfo().getHighest()));
+    }
+
+    private SnakesProto.GameMessage createAck(NodeInfo peer, long msgSeq) {
+        SnakesProto.GameMessage.Builder ack = SnakesProto.GameMessage.newBuilder()
+                .setMsgSeq(msgSeq)
+                .setAck(SnakesProto.GameMessage.AckMsg.newBuilder().build())
+                .setSenderId(myId);
+
+        int receiverId = peers.getPlayerId(peer);
+        if (receiverId != -1) {
+            ack.setReceiverId(receiverId);
+        }
+
+        return ack.build();
+    }
+
+    private byte[] takeAckTrailer(NodeInfo receiver) {
+        PeerState state = peers.getState(receiver);
+        if (!state.supportsExtensions()) return NO_TRAILER;
+
+        state.getPendingAck().set(false);
+
+        AckInfo ackInfo = state.getReplayWindow().getAckInfo();
+
+        return (ackInfo == null) ? NO_TRAILER : ackInfo.toFieldBytes(MessageExtensions.ACK_INFO);
+    }
+
+    private void processState(SnakesProto.GameState gameState, NodeInfo sender) {
+        if (gameState.getStateOrder() < gameLogic.getGameStateCounter()) {
+            return;
+        }
+        gameLogic.loadState(gameState, sender.getIp().getHostAddress());
+        lastMasterStateNanos = System.nanoTime();
+
+
+        Map<Integer, Boolean> hasPlayer = new HashMap<>();
+
+        for (SnakesProto.GamePlayer player : gameState.getPlayers().getPlayersList()) {
+            if (player.getId() == myId) {
+                continue;
+            }
+
+            NodeInfo hi = peers.getPlayerPeer(player.getId());
+            if (hi == null) {
+                if (!player.getIpAddress().equals("")) {
+                    InetAddress ip = addressCache.lookup(player.getIpAddress());
+                    if (ip == null) {
+                        continue;
+                    }
+                    hi = peers.intern(ip, player.getPort());
+                } else {
+                    hi = sender;
+                }
+            }
+
+            peers.bindPlayer(player.getId(), hi);
+            peers.getState(hi).setRole(player.getRole());
+            if (player.getRole() == SnakesProto.NodeRole.DEPUTY) {
+                deputyId = player.getId();
+                deputy = hi;
+            } else if (player.getRole() == SnakesProto.NodeRole.MASTER) {
+                masterId = player.getId();
+                master = hi;
+            }
+
+
+            hasPlayer.put(player.getId(), true);
+        }
+
+        for (int playerId : peers.getPlayerIds()) {
+            if (hasPlayer.containsKey(playerId) && !hasPlayer.get(playerId)) {
+                NodeInfo peer = peers.getPlayerPeer(playerId);
+                if (peer == null) {
+                    continue;
+                }
+
+                peers.release(peer);
+                livenessTracker.remove(peer);
+            }
+        }
+
+        boolean meDead = gameLogic.isDead(myId);
+
+        if (meDead && (nodeRole != SnakesProto.NodeRole.VIEWER)) {
+            SnakesProto.GameMessage.RoleChangeMsg.Builder roleChangeMsg =
+                    SnakesProto.GameMessage.RoleChangeMsg.newBuilder()
+                            .setReceiverRole(SnakesProto.NodeRole.MASTER)
+                            .setSenderRole(SnakesProto.NodeRole.VIEWER);
+
+            SnakesProto.GameMessage message = SnakesProto.GameMessage.newBuilder()
+                    .setRoleChange(roleChangeMsg)
+                    .setSenderId(myId)
+                    .setReceiverId(masterId)
+                    .setMsgSeq(nextSeq(master))
+                    .build();
+
+            sendAndStoreMessage(master, message);
+        }
+    }
+
     private SnakesProto.GameMessage createAck(SnakesProto.GameMessage gameMessage, int receiverId) {
         return SnakesProto.GameMessage.newBuilder()
                 .setMsgSeq(gameMessage.getMsgSeq())
@@ -530,59 +708,67 @@ public class NetworkLogic {
                 .build();
     }
 
+    @Override
+    public void steer(int playerId, SnakesProto.Direction direction) {
+        sendSteer(playerId, direction);
+    }
+
+    @Override
+    public void onTick(GameSnapshot snapshot) {
+        if (nodeRole == SnakesProto.NodeRole.MASTER) {
+            sendState(snapshot);
+        }
+    }
+
     public void sendSteer(int senderId, SnakesProto.Direction dir) {
         if (master == null) return;
 
         SnakesProto.GameMessage steerMessage = SnakesProto.GameMessage.newBuilder()
-                .setMsgSeq(msgSeqGenerator.getCounter())
+                .setMsgSeq(nextSeq(master))
                 .setSteer(SnakesProto.GameMessage.SteerMsg
                         .newBuilder()
                         .setDirection(dir))
                 .setSenderId(senderId)
                 .build();
 
-        if (!messages.containsKey(master)) {
-            messages.put(master, new ConcurrentHashMap<>());
-        }
-
-        byte[] steerMsg = steerMessage.toByteArray();
-        DatagramPacket steerDp = new DatagramPacket(steerMsg, 0, steerMsg.length,
-                master.getIp(), master.getPort());
-
-        unicastConnection.sendPacket(steerDp);
-        messages.get(master).put(steerMessage.getMsgSeq(), steerMessage);
+        sendAndStoreMessage(master, steerMessage);
     }
 
-    public void sendJoin(NodeInfo nodeInfo, String name) {
-        SnakesProto.GameMessage joinMsg = SnakesProto.GameMessage.newBuilder()
-                .setMsgSeq(msgSeqGenerator.getCounter())
+    public void sendJoin(NodeInfo hostInfo, String name) {
+        NodeInfo nodeInfo = peers.intern(hostInfo);
+
+        SnakesProto.GameMessage.Builder joinMsg = SnakesProto.GameMessage.newBuilder()
+                .setMsgSeq(nextSeq(nodeInfo))
                 .setJoin(SnakesProto.GameMessage.JoinMsg
                         .newBuilder()
-                        .setName(name))
-                .build();
-
-        byte[] joinMsgByte = joinMsg.toByteArray();
-        DatagramPacket datagramPacket = new DatagramPacket(joinMsgByte, 0, joinMsgByte.length,
-                nodeInfo.getIp(), nodeInfo.getPort());
-
-        unicastConnection.sendPacket(datagramPacket);
+                        .setName(name));
+        MessageExtensions.setVarint(joinMsg, MessageExtensions.EXTENSIONS, 1);
 
-
-        if (!messages.containsKey(nodeInfo)) {
-            messages.put(nodeInfo, new ConcurrentHashMap<>());
-        }
-
-        messages.get(nodeInfo).put(joinMsg.getMsgSeq(), joinMsg);
+        sendAndStoreMessage(nodeInfo, joinMsg.build());
     }
 
     public void disableMessageManager() {
-        receiver.interrupt();
-        nodesTimeoutChecker.cancel();
+        unicastConnection.close();
+        addressCache.close();
+        retransmitWheel.stop();
+        livenessWheel.stop();
         sender.cancel();
     }
 
-    public void sendState() {
-        List<Integer> killedSnakes = gameLogic.getDeadSnakes();
+    public int getSendQueueDepth(int priority) {
+        return unicastConnection.getQueueDepth(priority);
+    }
+
+    public int getMaxSendQueueDepth(int priority) {
+        return unicastConnection.getMaxQueueDepth(priority);
+    }
+
+    public void sendState(GameSnapshot snapshot) {
+        if (failoverStartNanos != 0) {
+            reportFailover(System.nanoTime());
+        }
+
+        List<Integer> killedSnakes = snapshot.getDeadSnakes();
 
         boolean masterDead = false;
         boolean deputyDead = false;
@@ -590,11 +776,8 @@ public class NetworkLogic {
         for (int id : killedSnakes) {
             if (id == myId) {
                 masterDead = true;
-            } else if (deputy != null && id == findPlayerIdByHostInfo(deputy)) {
+            } else if (deputy != null && id == peers.getPlayerId(deputy)) {
                 deputyDead = true;
-            } else {
-                NodeInfo hi = playersIds.get(id);
-                SnakesProto.NodeRole nr = playersRoles.get(hi);
             }
         }
 
@@ -606,41 +789,127 @@ public class NetworkLogic {
             }
         }
 
-        SnakesProto.GameState gameState = gameLogic.generateNewState();
+        OutgoingMessage statePayload = null;
+        Map<Integer, OutgoingMessage> deltaPayloads = new HashMap<>();
 
+        for (int playerId : peers.getPlayerIds()) {
+            NodeInfo peer = peers.getPlayerPeer(playerId);
+            if (playerId == myId || peer == null) continue;
 
-        SnakesProto.GameMessage.StateMsg.Builder stateMsgBuilder = SnakesProto.GameMessage.StateMsg.newBuilder()
-                .setState(gameState);
+            PeerState state = peers.getState(peer);
+            if (!shouldSendState(peer, state, snapshot.getStateOrder())) continue;
 
-        for (Map.Entry<Integer, NodeInfo> entry : playersIds.entrySet()) {
-            if (entry.getKey() == myId) continue;
+            GameSnapshot base = findBaseline(state);
 
-            SnakesProto.GameMessage stateMsg = SnakesProto.GameMessage.newBuilder()
-                    .setState(stateMsgBuilder)
-                    .setMsgSeq(msgSeqGenerator.getCounter())
-                    .build();
+            OutgoingMessage payload;
+            if (base != null) {
+                payload = deltaPayloads.computeIfAbsent(base.getStateOrder(),
+                        order -> OutgoingMessage.payload(MessageExtensions.setBytes(
+                                SnakesProto.GameMessage.newBuilder(), MessageExtensions.DELTA_STATE,
+                                StateDelta.encode(base, snapshot))));
+            } else {
+                if (statePayload == null) {
+                    statePayload = OutgoingMessage.payload(SnakesProto.GameMessage.newBuilder()
+                            .setState(SnakesProto.GameMessage.StateMsg.newBuilder()
+                                    .setState(gameLogic.generateNewState(snapshot))));
+                }
+                payload = statePayload;
+            }
+
+            long msgSeq = state.nextSeq();
+            state.getSentStates().record(msgSeq, snapshot.getStateOrder());
+            state.onStateSent(base == null);
+
+            OutgoingMessage stateMessage = payload.withEnvelope(msgSeq, playerId);
+            if (fecGroupSize > 0 && state.supportsExtensions()
+                    && !Fragment.needsFragmentation(stateMessage.getSize())) {
+                sendWithParity(peer, msgSeq, stateMessage);
+            } else {
+                sendOutgoing(peer, msgSeq, stateMessage);
+            }
+        }
+    }
+
+    private boolean shouldSendState(NodeInfo peer, PeerState state, int stateOrder) {
+        if (peer.equals(deputy) || state.getRole() == SnakesProto.NodeRole.DEPUTY
+                || state.getRole() == SnakesProto.NodeRole.MASTER) {
+            return true;
+        }
 
-            sendAndStoreMessage(entry.getValue(), stateMsg);
+        StateRateController stateRate = state.getStateRate();
+        int interval = stateRate.getInterval();
+        boolean send = stateRate.shouldSend(stateOrder, stateDelayNanos, ackIntervalNanos);
 
+        if (stateRate.getInterval() > interval) {
+            stateRateReductions.incrementAndGet();
         }
+        return send;
+    }
+
+    public long getStateRateReductions() {
+        return stateRateReductions.get();
+    }
+
+    private void sendWithParity(NodeInfo receiver, long msgSeq, OutgoingMessage message) {
+        byte[] trailer = takeAckTrailer(receiver);
+        unicastConnection.sendPacket(message, trailer, receiver, message.getPriority());
+
+        Parity parity = peers.getState(receiver).getParityEncoder(fecGroupSize).add(msgSeq, message, trailer);
+        if (parity == null) return;
+
+        SnakesProto.GameMessage.Builder parityMessage = SnakesProto.GameMessage.newBuilder().setMsgSeq(msgSeq);
+        MessageExtensions.setBytes(parityMessage, MessageExtensions.PARITY, parity.toByteString());
+
+        unicastConnection.sendUnbatched(parityMessage.build().toByteArray(), receiver, OutboundPacket.STATE);
+    }
+
+    public long getRecoveredStatePackets() {
+        return recoveredStatePackets.get();
+    }
+
+    public long getLostStatePackets() {
+        return lostStatePackets.get();
+    }
+
+    private GameSnapshot findBaseline(PeerState state) {
+        if (!state.supportsExtensions()) return null;
+
+        int ackedOrder = state.getAckedStateOrder();
+        if (ackedOrder < 0) return null;
+
+        if (state.getStatesSinceKeyframe() >= KEYFRAME_INTERVAL) return null;
+
+        return gameLogic.getTickSnapshot(ackedOrder);
     }
 
     public NodeInfo getHostInfo(int pi) {
-        return playersIds.get(pi);
+        return peers.getPlayerPeer(pi);
     }
 
     public int addMe(String name, SnakesProto.NodeRole _nodeRole, SnakesProto.PlayerType _playerType) {
         int newId = gameLogic.addPlayer(name, _nodeRole, _playerType, "", unicastConnection.getLocalPort());
         if (newId > 0) {
-            playersIds.put(newId, new NodeInfo(unicastConnection.getLocalAddress(), unicastConnection.getLocalPort()));
+            NodeInfo me = peers.intern(unicastConnection.getLocalAddress(), unicastConnection.getLocalPort());
+            peers.bindPlayer(newId, me);
         }
 
         myId = newId;
         return newId;
     }
 
+    private void sendKeyframeRequest(SnakesProto.GameMessage gameMessage, NodeInfo hi) {
+        int receiverId = peers.getPlayerId(hi);
+        if (receiverId == -1) {
+            return;
+        }
+        SnakesProto.GameMessage.Builder ack = createAck(gameMessage, receiverId).toBuilder();
+        MessageExtensions.setVarint(ack, MessageExtensions.KEYFRAME_REQUEST, 1);
+
+        sendMessage(hi, ack.build());
+    }
+
     private void sendAck(SnakesProto.GameMessage gameMessage, NodeInfo hi) {
-        int receiverId = findPlayerIdByHostInfo(hi);
+        int receiverId = peers.getPlayerId(hi);
         if (receiverId == -1) {
             return;
         }
@@ -649,64 +918,205 @@ public class NetworkLogic {
         sendMessage(hi, ack);
     }
 
-    private SnakesProto.GameMessage createPing() {
-        SnakesProto.GameMessage pingMsg = SnakesProto.GameMessage.newBuilder()
-                .setMsgSeq(msgSeqGenerator.getCounter())
-                .setPing(SnakesProto.GameMessage.PingMsg.newBuilder().build())
-                .build();
+    private void reportFailover(long firstStateNanos) {
+        lastFailoverDetectionMs = TimeUnit.NANOSECONDS.toMillis(failoverDetectedNanos - failoverStartNanos);
+        lastFailoverTakeoverMs = TimeUnit.NANOSECONDS.toMillis(firstStateNanos - failoverDetectedNanos);
+
+        failoverStartNanos = 0;
+    }
+
+    public long getLastFailoverDetectionMs() {
+        return lastFailoverDetectionMs;
+    }
 
-        return pingMsg;
+    public long getLastFailoverTakeoverMs() {
+        return lastFailoverTakeoverMs;
+    }
+
+    private void replicateToDeputy() {
+        NodeInfo standby = deputy;
+        if (standby == null) return;
+
+        SnakesProto.GameMessage.Builder replicaMsg = SnakesProto.GameMessage.newBuilder()
+                .setMsgSeq(nextSeq(standby))
+                .setSenderId(myId);
+        MessageExtensions.setBytes(replicaMsg, MessageExtensions.REPLICA, gameLogic.getStandbyReplica().toByteString());
+
+        sendAndStoreMessage(standby, replicaMsg.build());
+    }
+
+    private SnakesProto.GameMessage createPing(NodeInfo receiver) {
+        SnakesProto.GameMessage.Builder pingMsg = SnakesProto.GameMessage.newBuilder()
+                .setMsgSeq(nextSeq(receiver))
+                .setPing(SnakesProto.GameMessage.PingMsg.newBuilder().build());
+        MessageExtensions.setVarint(pingMsg, MessageExtensions.EXTENSIONS, 1);
+
+        return pingMsg.build();
     }
 
     private void sendMessage(NodeInfo receiver, SnakesProto.GameMessage message) {
         byte[] messByte = message.toByteArray();
-        DatagramPacket ackDp = new DatagramPacket(messByte, 0, messByte.length,
-                receiver.getIp(), receiver.getPort());
+        if (needsFragmentation(receiver, messByte.length)) {
+            sendOutgoing(receiver, message.getMsgSeq(), new OutgoingMessage(message));
+            return;
+        }
+
+        unicastConnection.sendPacket(messByte, messByte.length, takeAckTrailer(receiver), receiver,
+                OutgoingMessage.priority(message));
+    }
+
+    private void sendOutgoing(NodeInfo receiver, long msgSeq, OutgoingMessage message) {
+        byte[] trailer = takeAckTrailer(receiver);
+
+        if (!needsFragmentation(receiver, message.getSize())) {
+            unicastConnection.sendPacket(message, trailer, receiver, message.getPriority());
+            return;
+        }
+
+        int count = Fragment.countFor(message.getSize());
+        if (count > Fragment.MAX_FRAGMENTS) {
+            oversizedMessages.incrementAndGet();
+            return;
+        }
+
+        for (int i = 0; i < count; ++i) {
+            if (!message.isFragmentAcked(i)) {
+                unicastConnection.sendFragment(message, msgSeq, i, count, trailer, receiver, message.getPriority());
+            }
+        }
+    }
+
+    private boolean needsFragmentation(NodeInfo receiver, int size) {
+        return Fragment.needsFragmentation(size) && peers.getState(receiver).supportsExtensions();
+    }
+
+    public long getOversizedMessages() {
+        return oversizedMessages.get();
+    }
 
-        unicastConnection.sendPacket(ackDp);
+    private long nextSeq(NodeInfo receiver) {
+        return peers.getState(receiver).nextSeq();
     }
 
     private void sendAndStoreMessage(NodeInfo receiver, SnakesProto.GameMessage message) {
-        if (!messages.containsKey(receiver))
-            messages.put(receiver, new ConcurrentHashMap<>());
+        sendAndStoreMessage(receiver, message.getMsgSeq(), new OutgoingMessage(message));
+    }
+
+    private void sendAndStoreMessage(NodeInfo receiver, long msgSeq, OutgoingMessage message) {
+        ConcurrentHashMap<Long, OutgoingMessage> outbox = peers.getState(receiver).getOutbox();
+
+        if (message.getSupersedeKey() != OutgoingMessage.NOT_SUPERSEDING) {
+            dropSuperseded(outbox, msgSeq, message.getSupersedeKey());
+        }
 
-        sendMessage(receiver, message);
+        outbox.put(msgSeq, message);
 
-        messages.get(receiver).put(message.getMsgSeq(), message);
+        message.setSentNanos(System.nanoTime());
+        sendOutgoing(receiver, msgSeq, message);
+        scheduleRetransmit(receiver, msgSeq, message);
     }
 
-    private void changeDeputy() {
-        if (playersRoles.size() == 0) return;
+    private void dropSuperseded(ConcurrentHashMap<Long, OutgoingMessage> outbox, long msgSeq, int supersedeKey) {
+        Iterator<Map.Entry<Long, OutgoingMessage>> it = outbox.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, OutgoingMessage> entry = it.next();
+            OutgoingMessage older = entry.getValue();
+
+            if (entry.getKey() < msgSeq && older.getSupersedeKey() == supersedeKey) {
+                WheelTimeout timeout = older.getRetransmitTimeout();
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+                it.remove();
+            }
+        }
+    }
 
+    private PeerState createPeerState(MessageCounter seqCounter) {
+        return new PeerState(new RttEstimator(pingDelay, MIN_RTO_MS, nodeTimeout), seqCounter);
+    }
+
+    private void scheduleRetransmit(NodeInfo receiver, long msgSeq, OutgoingMessage message) {
+        long rto = peers.getState(receiver).getRttEstimator().getRtoMs(message.getRetransmits());
+        message.setRetransmitTimeout(retransmitWheel.schedule(rto, () -> retransmit(receiver, msgSeq, message)));
+    }
+
+    private void retransmit(NodeInfo receiver, long msgSeq, OutgoingMessage message) {
+        if (peers.lookup(receiver.getSocketAddress()) == null) return;
+
+        ConcurrentHashMap<Long, OutgoingMessage> outbox = peers.getState(receiver).getOutbox();
+        if (outbox.get(msgSeq) != message) return;
+
+        if (message.getRetransmits() >= MAX_RETRANSMITS) {
+            outbox.remove(msgSeq, message);
+            return;
+        }
+
+        message.setRetransmits(message.getRetransmits() + 1);
+        sendOutgoing(receiver, msgSeq, message);
+        scheduleRetransmit(receiver, msgSeq, message);
+    }
+
+    private void resendOutbox(NodeInfo receiver, Map<Long, OutgoingMessage> outbox) {
+        for (OutgoingMessage message : outbox.values()) {
+            WheelTimeout timeout = message.getRetransmitTimeout();
+            if (timeout != null) {
+                timeout.cancel();
+            }
+
+            SnakesProto.GameMessage gameMessage = message.getMessage();
+            if (gameMessage.hasMsgSeq()) {
+                sendAndStoreMessage(receiver, gameMessage.toBuilder().setMsgSeq(nextSeq(receiver)).build());
+            }
+        }
+    }
+
+    private void onAcked(NodeInfo sender, OutgoingMessage message) {
+        WheelTimeout timeout = message.getRetransmitTimeout();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+
+        if (message.getRetransmits() == 0) {
+            peers.getState(sender).getRttEstimator().addSample(System.nanoTime() - message.getSentNanos());
+        }
+    }
+
+    private void changeDeputy() {
         deputy = null;
         deputyId = -1;
 
-        for (Map.Entry<NodeInfo, SnakesProto.NodeRole> entry : playersRoles.entrySet()) {
-            if (entry.getValue() == SnakesProto.NodeRole.DEPUTY) {
-                deputy = entry.getKey();
-                deputyId = findPlayerIdByHostInfo(entry.getKey());
+        for (int handle = 0; handle < peers.size(); ++handle) {
+            NodeInfo peer = peers.getPeer(handle);
+            if (peer == null) {
+                continue;
+            }
+            PeerState state = peers.getState(peer);
+
+            if (state.getRole() == SnakesProto.NodeRole.DEPUTY) {
+                deputy = peer;
+                deputyId = peers.getPlayerId(peer);
                 return;
             }
-            if (entry.getValue() == SnakesProto.NodeRole.NORMAL) {
-                int receiverId = findPlayerIdByHostInfo(entry.getKey());
+            if (state.getRole() == SnakesProto.NodeRole.NORMAL) {
+                int receiverId = peers.getPlayerId(peer);
                 if (receiverId == -1) {
                     continue;
                 }
 
-                SnakesProto.GameMessage roleChangeMsg = createRoleChangeMessage(receiverId, myId,
+                SnakesProto.GameMessage roleChangeMsg = createRoleChangeMessage(peer, receiverId, myId,
                         SnakesProto.NodeRole.DEPUTY, SnakesProto.NodeRole.MASTER);
 
-                HashMap<Integer, SnakesProto.GamePlayer> players = gameLogic.getPlayers();
-                players.put(receiverId, players.get(receiverId).toBuilder().setRole(SnakesProto.NodeRole.DEPUTY).build());
-                playersRoles.put(entry.getKey(), SnakesProto.NodeRole.DEPUTY);
-                sendAndStoreMessage(entry.getKey(), roleChangeMsg);
+                gameLogic.setPlayerRole(receiverId, SnakesProto.NodeRole.DEPUTY);
+                state.setRole(SnakesProto.NodeRole.DEPUTY);
+                sendAndStoreMessage(peer, roleChangeMsg);
 
                 break;
             }
         }
     }
 
-    private SnakesProto.GameMessage createRoleChangeMessage(int receiverId, int senderId,
+    private SnakesProto.GameMessage createRoleChangeMessage(NodeInfo receiver, int receiverId, int senderId,
                                                             SnakesProto.NodeRole receiverRole,
                                                             SnakesProto.NodeRole senderRole) {
         return SnakesProto.GameMessage.newBuilder()
@@ -715,24 +1125,11 @@ public class NetworkLogic {
                         .setSenderRole(senderRole))
                 .setSenderId(senderId)
                 .setReceiverId(receiverId)
-                .setMsgSeq(msgSeqGenerator.getCounter())
+                .setMsgSeq(nextSeq(receiver))
                 .build();
     }
 
 
-    private int findPlayerIdByHostInfo(NodeInfo hostInfo) {
-        int playerId = -1;
-        for (Map.Entry<Integer, NodeInfo> entry : playersIds.entrySet()) {
-            if (entry.getValue().equals(hostInfo)) {
-                playerId = entry.getKey();
-                break;
-            }
-        }
-
-        return playerId;
-    }
-
-
     public void safeExit() {
         if (nodeRole == SnakesProto.NodeRole.VIEWER)
             gameWindow.terminate();
@@ -746,7 +1143,6 @@ public class NetworkLogic {
 
         SnakesProto.GameMessage.Builder roleChangeMsg =
                 SnakesProto.GameMessage.newBuilder()
-                .setMsgSeq(msgSeqGenerator.getCounter())
                 .setSenderId(myId);
 
         SnakesProto.GameMessage.RoleChangeMsg.Builder rlChgMsgBuilder
@@ -762,13 +1158,13 @@ public class NetworkLogic {
 
         if (nodeRole == SnakesProto.NodeRole.MASTER) {
             if (deputy != null) {
-                roleChangeMsg.setReceiverId(deputyId);
+                roleChangeMsg.setReceiverId(deputyId).setMsgSeq(nextSeq(deputy));
                 sendAndStoreMessage(deputy, roleChangeMsg.build());
             } else {
                 gameWindow.terminate();
             }
         } else {
-            roleChangeMsg.setReceiverId(masterId);
+            roleChangeMsg.setReceiverId(masterId).setMsgSeq(nextSeq(master));
             sendAndStoreMessage(master, roleChangeMsg.build());
         }
 
@@ -779,6 +1175,15 @@ public class NetworkLogic {
     private void becameMaster() {
         changeRole(SnakesProto.NodeRole.MASTER);
 
+        failoverStartNanos = lastMasterStateNanos;
+        failoverDetectedNanos = System.nanoTime();
+
+        StandbyReplica replica = standbyReplica;
+        if (replica != null) {
+            gameLogic.applyStandbyReplica(replica);
+            standbyReplica = null;
+        }
+
         master = null;
         masterId = -1;
 
@@ -790,38 +1195,39 @@ public class NetworkLogic {
 
         gameMessageBuilder.setSenderId(myId);
 
-        for (Map.Entry<Integer, NodeInfo> entry : playersIds.entrySet()) {
+        for (int playerId : peers.getPlayerIds()) {
+            NodeInfo peer = peers.getPlayerPeer(playerId);
 
-            gameMessageBuilder.setReceiverId(entry.getKey());
+            gameMessageBuilder.setReceiverId(playerId);
 
-            if (!playersRoles.containsKey(entry.getValue())) continue;
+            SnakesProto.NodeRole peerRole = (peer == null) ? null : peers.getState(peer).getRole();
+            if (peerRole == null) continue;
 
-            roleChgMsgBuilder.setReceiverRole(playersRoles.get(entry.getValue()));
+            roleChgMsgBuilder.setReceiverRole(peerRole);
 
-            if (deputy == null && playersRoles.get(entry.getValue()) != SnakesProto.NodeRole.VIEWER) {
-                deputy = entry.getValue();
-                deputyId = entry.getKey();
+            if (deputy == null && peerRole != SnakesProto.NodeRole.VIEWER) {
+                deputy = peer;
+                deputyId = playerId;
                 roleChgMsgBuilder.setReceiverRole(SnakesProto.NodeRole.DEPUTY);
             }
 
-            gameMessageBuilder.setMsgSeq(msgSeqGenerator.getCounter());
+            gameMessageBuilder.setMsgSeq(nextSeq(peer));
 
             SnakesProto.GameMessage message = gameMessageBuilder.setRoleChange(roleChgMsgBuilder.build()).build();
 
-            sendMessage(entry.getValue(), message);
+            sendMessage(peer, message);
 
         }
 
     }
 
     private void findNewMaster() {
-        for (var entry : playersIds.entrySet()) {
-            if (playersRoles.get(entry.getValue()) == SnakesProto.NodeRole.DEPUTY) {
-                master = entry.getValue();
-                masterId = entry.getKey();
-                if (!nodesTimeout.containsKey(master)) {
-                    nodesTimeout.put(master, System.currentTimeMillis());
-                }
+        for (int playerId : peers.getPlayerIds()) {
+            NodeInfo peer = peers.getPlayerPeer(playerId);
+            if (peer != null && peers.getState(peer).getRole() == SnakesProto.NodeRole.DEPUTY) {
+                master = peer;
+                masterId = playerId;
+                livenessTracker.track(master);
             }
         }
     }
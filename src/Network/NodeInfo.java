@@ -1,14 +1,25 @@
 package Network;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 public class NodeInfo {
     private final InetAddress ip;
     private final int port;
+    private final InetSocketAddress socketAddress;
+    private final int handle;
+    private final int hash;
 
     public NodeInfo(InetAddress ip, int port) {
+        this(ip, port, -1);
+    }
+
+    NodeInfo(InetAddress ip, int port, int handle) {
         this.ip = ip;
         this.port = port;
+        this.socketAddress = new InetSocketAddress(ip, port);
+        this.handle = handle;
+        this.hash = 31 * ip.hashCode() + port;
     }
 
     public InetAddress getIp() {
@@ -19,9 +30,17 @@ public class NodeInfo {
         return port;
     }
 
+    public InetSocketAddress getSocketAddress() {
+        return socketAddress;
+    }
+
+    public int getHandle() {
+        return handle;
+    }
+
     @Override
     public int hashCode() {
-        return (ip.toString() + port).hashCode();
+        return hash;
     }
 
     @Override
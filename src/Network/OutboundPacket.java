@@ -0,0 +1,46 @@
+package Network;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+public class OutboundPacket {
+    public static final int CONTROL = 0;
+    public static final int INPUT = 1;
+    public static final int STATE = 2;
+    public static final int PING = 3;
+    public static final int PRIORITY_LEVELS = 4;
+
+    private static final String[] PRIORITY_NAMES = {"control", "input", "state", "ping"};
+
+    private final ByteBuffer buffer;
+    private final InetSocketAddress address;
+    private final int priority;
+    private final boolean batchable;
+
+    public OutboundPacket(ByteBuffer buffer, InetSocketAddress address, int priority, boolean batchable) {
+        this.buffer = buffer;
+        this.address = address;
+        this.priority = priority;
+        this.batchable = batchable;
+    }
+
+    public static String getPriorityName(int priority) {
+        return PRIORITY_NAMES[priority];
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isBatchable() {
+        return batchable;
+    }
+}
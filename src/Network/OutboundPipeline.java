@@ -0,0 +1,186 @@
+package Network;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class OutboundPipeline {
+    private final double bytesPerNano;
+    private final long burstBytes;
+    private final ByteBufferPool bufferPool;
+
+    private final HashMap<InetSocketAddress, PeerQueue> queues = new HashMap<>();
+    private final ArrayDeque<PeerQueue> active = new ArrayDeque<>();
+    private final AtomicIntegerArray depths = new AtomicIntegerArray(OutboundPacket.PRIORITY_LEVELS);
+    private final AtomicIntegerArray maxDepths = new AtomicIntegerArray(OutboundPacket.PRIORITY_LEVELS);
+
+    public OutboundPipeline(long bytesPerSecond, long burstBytes, ByteBufferPool bufferPool) {
+        this.bytesPerNano = bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        this.burstBytes = burstBytes;
+        this.bufferPool = bufferPool;
+    }
+
+    public void add(OutboundPacket packet, long nowNanos) {
+        PeerQueue queue = queues.get(packet.getAddress());
+        if (queue == null) {
+            queue = new PeerQueue(packet.getAddress(), burstBytes, nowNanos);
+            queues.put(packet.getAddress(), queue);
+        }
+
+        queue.packets[packet.getPriority()].add(packet);
+        ++queue.size;
+
+        int depth = depths.incrementAndGet(packet.getPriority());
+        if (depth > maxDepths.get(packet.getPriority())) {
+            maxDepths.set(packet.getPriority(), depth);
+        }
+
+        queue.removed = false;
+        if (!queue.active) {
+            queue.active = true;
+            active.add(queue);
+        }
+    }
+
+    public void removePeer(InetSocketAddress address) {
+        PeerQueue queue = queues.get(address);
+        if (queue == null) return;
+
+        if (queue.size == 0) {
+            queues.remove(address);
+        } else {
+            queue.removed = true;
+        }
+    }
+
+    public OutboundPacket next(long nowNanos) {
+        for (int i = active.size(); i > 0; --i) {
+            PeerQueue queue = active.poll();
+            queue.refill(nowNanos, bytesPerNano, burstBytes);
+
+            int maxPriority = OutboundPacket.PRIORITY_LEVELS - 1;
+            if (queue.tokens <= 0) {
+                if (queue.tokens <= -burstBytes || queue.peek().getPriority() > OutboundPacket.INPUT) {
+                    active.add(queue);
+                    continue;
+                }
+                maxPriority = OutboundPacket.INPUT;
+            }
+
+            OutboundPacket datagram = nextDatagram(queue, maxPriority);
+            queue.tokens -= datagram.getBuffer().remaining();
+
+            if (queue.size > 0) {
+                active.add(queue);
+            } else {
+                queue.active = false;
+                if (queue.removed) {
+                    queues.remove(queue.address);
+                }
+            }
+            return datagram;
+        }
+
+        return null;
+    }
+
+    public int getQueueDepth(int priority) {
+        return depths.get(priority);
+    }
+
+    public int getMaxQueueDepth(int priority) {
+        return maxDepths.get(priority);
+    }
+
+    public long getDelayMs(long nowNanos) {
+        long delayNanos = Long.MAX_VALUE;
+
+        for (PeerQueue queue : active) {
+            queue.refill(nowNanos, bytesPerNano, burstBytes);
+            delayNanos = Math.min(delayNanos, (long) Math.ceil(Math.max(0, 1 - queue.tokens) / bytesPerNano));
+        }
+
+        return (delayNanos == Long.MAX_VALUE) ? -1 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+    }
+
+    private OutboundPacket nextDatagram(PeerQueue queue, int maxPriority) {
+        OutboundPacket first = poll(queue);
+        if (!first.isBatchable()) return first;
+
+        int batchSize = DatagramBatch.entrySize(first.getBuffer().remaining());
+        OutboundPacket next = queue.peek();
+        if (next == null || !next.isBatchable() || next.getPriority() > maxPriority
+                || batchSize + DatagramBatch.entrySize(next.getBuffer().remaining()) > DatagramBatch.MAX_BATCH_SIZE) {
+            return first;
+        }
+
+        ByteBuffer batch = bufferPool.acquire(DatagramBatch.MAX_BATCH_SIZE);
+        DatagramBatch.writeEntry(batch, first.getBuffer());
+        bufferPool.release(first.getBuffer());
+
+        while (next != null && next.isBatchable() && next.getPriority() <= maxPriority
+                && batch.position() + DatagramBatch.entrySize(next.getBuffer().remaining())
+                <= DatagramBatch.MAX_BATCH_SIZE) {
+            poll(queue);
+            DatagramBatch.writeEntry(batch, next.getBuffer());
+            bufferPool.release(next.getBuffer());
+            next = queue.peek();
+        }
+        batch.flip();
+
+        return new OutboundPacket(batch, queue.address, first.getPriority(), false);
+    }
+
+    private OutboundPacket poll(PeerQueue queue) {
+        OutboundPacket packet = queue.poll();
+        depths.decrementAndGet(packet.getPriority());
+        return packet;
+    }
+
+    private static class PeerQueue {
+        private final InetSocketAddress address;
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<OutboundPacket>[] packets =
+                (ArrayDeque<OutboundPacket>[]) new ArrayDeque<?>[OutboundPacket.PRIORITY_LEVELS];
+        private int size = 0;
+        private boolean active = false;
+        private boolean removed = false;
+        private double tokens;
+        private long refilledNanos;
+
+        PeerQueue(InetSocketAddress address, long burstBytes, long nowNanos) {
+            this.address = address;
+            this.tokens = burstBytes;
+            this.refilledNanos = nowNanos;
+
+            for (int i = 0; i < packets.length; ++i) {
+                packets[i] = new ArrayDeque<>();
+            }
+        }
+
+        void refill(long nowNanos, double bytesPerNano, long burstBytes) {
+            tokens = Math.min(burstBytes, tokens + (nowNanos - refilledNanos) * bytesPerNano);
+            refilledNanos = nowNanos;
+        }
+
+        OutboundPacket peek() {
+            for (ArrayDeque<OutboundPacket> queue : packets) {
+                if (!queue.isEmpty()) return queue.peek();
+            }
+            return null;
+        }
+
+        OutboundPacket poll() {
+            for (ArrayDeque<OutboundPacket> queue : packets) {
+                if (!queue.isEmpty()) {
+                    --size;
+                    return queue.poll();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package Network;
+
+import Protobuf.SnakesProto;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+public class OutgoingMessage {
+    public static final int NOT_SUPERSEDING = 0;
+    public static final int REPLICA_KEY = -2;
+
+    private static final byte[] NO_ENVELOPE = new byte[0];
+
+    private final SnakesProto.GameMessage message;
+    private final byte[] envelope;
+    private final byte[] payload;
+    private final int supersedeKey;
+    private final int priority;
+
+    private volatile long sentNanos;
+    private volatile int retransmits = 0;
+    private volatile WheelTimeout retransmitTimeout;
+    private BitSet ackedFragments;
+
+    public OutgoingMessage(SnakesProto.GameMessage message) {
+        this(message, NO_ENVELOPE, message.toByteArray());
+    }
+
+    private OutgoingMessage(SnakesProto.GameMessage message, byte[] envelope, byte[] payload) {
+        this.message = message;
+        this.envelope = envelope;
+        this.payload = payload;
+        this.supersedeKey = supersedeKey(message);
+        this.priority = priority(message);
+    }
+
+    private static int supersedeKey(SnakesProto.GameMessage message) {
+        if (MessageExtensions.has(message, MessageExtensions.REPLICA)) {
+            return REPLICA_KEY;
+        }
+        if (message.hasSteer() && message.getSenderId() > 0) {
+            return message.getSenderId();
+        }
+        return NOT_SUPERSEDING;
+    }
+
+    public static int priority(SnakesProto.GameMessage message) {
+        if (message.hasState() || MessageExtensions.has(message, MessageExtensions.DELTA_STATE)) {
+            return OutboundPacket.STATE;
+        }
+        if (message.hasSteer()) {
+            return OutboundPacket.INPUT;
+        }
+        if (message.hasPing()) {
+            return OutboundPacket.PING;
+        }
+        return OutboundPacket.CONTROL;
+    }
+
+    public static OutgoingMessage payload(SnakesProto.GameMessage.Builder payloadBuilder) {
+        return new OutgoingMessage(payloadBuilder.buildPartial());
+    }
+
+    public OutgoingMessage withEnvelope(long msgSeq, int receiverId) {
+        int envelopeSize = CodedOutputStream.computeInt64Size(
+                SnakesProto.GameMessage.MSG_SEQ_FIELD_NUMBER, msgSeq);
+        if (receiverId >= 0) {
+            envelopeSize += CodedOutputStream.computeInt32Size(
+                    SnakesProto.GameMessage.RECEIVER_ID_FIELD_NUMBER, receiverId);
+        }
+
+        byte[] newEnvelope = new byte[envelopeSize];
+        CodedOutputStream out = CodedOutputStream.newInstance(newEnvelope);
+
+        try {
+            out.writeInt64(SnakesProto.GameMessage.MSG_SEQ_FIELD_NUMBER, msgSeq);
+            if (receiverId >= 0) {
+                out.writeInt32(SnakesProto.GameMessage.RECEIVER_ID_FIELD_NUMBER, receiverId);
+            }
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write message envelope", e);
+        }
+
+        return new OutgoingMessage(message, newEnvelope, payload);
+    }
+
+    public SnakesProto.GameMessage getMessage() {
+        return message;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public int getSupersedeKey() {
+        return supersedeKey;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getSize() {
+        return envelope.length + payload.length;
+    }
+
+    public void writeTo(ByteBuffer buffer) {
+        buffer.put(envelope).put(payload);
+    }
+
+    public void writeRange(ByteBuffer buffer, int offset, int length) {
+        if (offset < envelope.length) {
+            int fromEnvelope = Math.min(length, envelope.length - offset);
+            buffer.put(envelope, offset, fromEnvelope);
+            offset += fromEnvelope;
+            length -= fromEnvelope;
+        }
+
+        if (length > 0) {
+            buffer.put(payload, offset - envelope.length, length);
+        }
+    }
+
+    public synchronized boolean isFragmentAcked(int index) {
+        return ackedFragments != null && ackedFragments.get(index);
+    }
+
+    public synchronized void ackFragments(BitSet fragments) {
+        if (ackedFragments == null) {
+            ackedFragments = new BitSet();
+        }
+        ackedFragments.or(fragments);
+    }
+
+    public long getSentNanos() {
+        return sentNanos;
+    }
+
+    public void setSentNanos(long sentNanos) {
+        this.sentNanos = sentNanos;
+    }
+
+    public int getRetransmits() {
+        return retransmits;
+    }
+
+    public void setRetransmits(int retransmits) {
+        this.retransmits = retransmits;
+    }
+
+    public WheelTimeout getRetransmitTimeout() {
+        return retransmitTimeout;
+    }
+
+    public void setRetransmitTimeout(WheelTimeout retransmitTimeout) {
+        this.retransmitTimeout = retransmitTimeout;
+    }
+}
@@ -0,0 +1,8 @@
+package Network;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+
+public interface PacketHandler {
+    void onPacket(ByteBuffer data, InetSocketAddress sender);
+}
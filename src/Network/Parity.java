@@ -0,0 +1,86 @@
+package Network;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import java.io.IOException;
+
+public class Parity {
+    public static final int MIN_GROUP_SIZE = 2;
+    public static final int MAX_GROUP_SIZE = 16;
+
+    private final long[] msgSeqs;
+    private final int[] lengths;
+    private final ByteString data;
+
+    public Parity(long[] msgSeqs, int[] lengths, ByteString data) {
+        this.msgSeqs = msgSeqs;
+        this.lengths = lengths;
+        this.data = data;
+    }
+
+    public static boolean isValidGroupSize(int groupSize) {
+        return groupSize == 0 || (groupSize >= MIN_GROUP_SIZE && groupSize <= MAX_GROUP_SIZE);
+    }
+
+    public ByteString toByteString() {
+        ByteString.Output output = ByteString.newOutput();
+        CodedOutputStream out = CodedOutputStream.newInstance(output);
+
+        try {
+            out.writeUInt32NoTag(msgSeqs.length);
+            for (int i = 0; i < msgSeqs.length; ++i) {
+                out.writeUInt64NoTag(msgSeqs[i]);
+                out.writeUInt32NoTag(lengths[i]);
+            }
+            out.writeRawBytes(data);
+            out.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode parity", e);
+        }
+
+        return output.toByteString();
+    }
+
+    public static Parity parse(ByteString bytes) throws IOException {
+        CodedInputStream in = bytes.newCodedInput();
+        int count = in.readUInt32();
+
+        if (count < MIN_GROUP_SIZE || count > MAX_GROUP_SIZE) {
+            throw new IOException("Bad parity group size " + count);
+        }
+
+        long[] msgSeqs = new long[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; ++i) {
+            msgSeqs[i] = in.readUInt64();
+            lengths[i] = in.readUInt32();
+        }
+
+        ByteString data = bytes.substring(in.getTotalBytesRead());
+        for (int length : lengths) {
+            if (length > data.size()) {
+                throw new IOException("Bad parity packet length " + length);
+            }
+        }
+
+        return new Parity(msgSeqs, lengths, data);
+    }
+
+    public int getCount() {
+        return msgSeqs.length;
+    }
+
+    public long getMsgSeq(int index) {
+        return msgSeqs[index];
+    }
+
+    public int getLength(int index) {
+        return lengths[index];
+    }
+
+    public ByteString getData() {
+        return data;
+    }
+}
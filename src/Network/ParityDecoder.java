@@ -0,0 +1,74 @@
+package Network;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+public class ParityDecoder {
+    private static final int MAX_CACHED_PER_PEER = 4 * Parity.MAX_GROUP_SIZE;
+
+    private final HashMap<NodeInfo, LinkedHashMap<Long, byte[]>> received = new HashMap<>();
+
+    public synchronized void cache(NodeInfo sender, long msgSeq, ByteBuffer packet, int offset, int length) {
+        LinkedHashMap<Long, byte[]> packets = received.computeIfAbsent(sender, s -> new LinkedHashMap<>());
+
+        byte[] bytes = new byte[length];
+        packet.get(offset, bytes);
+        packets.put(msgSeq, bytes);
+
+        if (packets.size() > MAX_CACHED_PER_PEER) {
+            Iterator<Long> eldest = packets.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public synchronized int countMissing(NodeInfo sender, Parity parity, ReplayWindow replayWindow) {
+        LinkedHashMap<Long, byte[]> packets = received.get(sender);
+
+        int missing = 0;
+        for (int i = 0; i < parity.getCount(); ++i) {
+            long msgSeq = parity.getMsgSeq(i);
+            if ((packets == null || !packets.containsKey(msgSeq)) && !replayWindow.contains(msgSeq)) {
+                ++missing;
+            }
+        }
+
+        return missing;
+    }
+
+    public synchronized byte[] recover(NodeInfo sender, Parity parity) {
+        LinkedHashMap<Long, byte[]> packets = received.get(sender);
+        if (packets == null) return null;
+
+        ByteString data = parity.getData();
+        byte[] packet = data.toByteArray();
+        int missingIndex = -1;
+
+        for (int i = 0; i < parity.getCount(); ++i) {
+            byte[] other = packets.get(parity.getMsgSeq(i));
+            if (other == null) {
+                if (missingIndex != -1) return null;
+                missingIndex = i;
+                continue;
+            }
+
+            for (int j = 0; j < other.length && j < packet.length; ++j) {
+                packet[j] ^= other[j];
+            }
+        }
+
+        if (missingIndex == -1) return null;
+
+        byte[] recovered = new byte[parity.getLength(missingIndex)];
+        System.arraycopy(packet, 0, recovered, 0, recovered.length);
+        return recovered;
+    }
+
+    public synchronized void removePeer(NodeInfo peer) {
+        received.remove(peer);
+    }
+}
@@ -0,0 +1,58 @@
+package Network;
+
+import com.google.protobuf.ByteString;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class ParityEncoder {
+    private final int groupSize;
+    private final long[] msgSeqs;
+    private final int[] lengths;
+
+    private byte[] parity = new byte[0];
+    private ByteBuffer scratch = ByteBuffer.allocate(0);
+    private int count = 0;
+    private int maxLength = 0;
+
+    public ParityEncoder(int groupSize) {
+        this.groupSize = groupSize;
+        this.msgSeqs = new long[groupSize];
+        this.lengths = new int[groupSize];
+    }
+
+    public synchronized Parity add(long msgSeq, OutgoingMessage message, byte[] trailer) {
+        int length = message.getSize() + trailer.length;
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(length);
+        }
+        if (parity.length < length) {
+            parity = Arrays.copyOf(parity, length);
+        }
+
+        scratch.clear();
+        message.writeTo(scratch);
+        scratch.put(trailer);
+
+        byte[] packet = scratch.array();
+        for (int i = 0; i < length; ++i) {
+            parity[i] ^= packet[i];
+        }
+
+        msgSeqs[count] = msgSeq;
+        lengths[count] = length;
+        maxLength = Math.max(maxLength, length);
+
+        if (++count < groupSize) {
+            return null;
+        }
+
+        Parity result = new Parity(msgSeqs.clone(), lengths.clone(), ByteString.copyFrom(parity, 0, maxLength));
+
+        Arrays.fill(parity, 0, maxLength, (byte) 0);
+        count = 0;
+        maxLength = 0;
+
+        return result;
+    }
+}
@@ -0,0 +1,240 @@
+package Network;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+public class PeerRegistry {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private final ConcurrentHashMap<InetSocketAddress, NodeInfo> byAddress = new ConcurrentHashMap<>();
+    private final Function<MessageCounter, PeerState> stateFactory;
+
+    private volatile View view = new View(new NodeInfo[INITIAL_CAPACITY], new PeerState[INITIAL_CAPACITY],
+            filled(INITIAL_CAPACITY), 0, new int[0], new int[0]);
+    private int[] freeHandles = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private long releasedSeq = 0;
+
+    public PeerRegistry(Function<MessageCounter, PeerState> stateFactory) {
+        this.stateFactory = stateFactory;
+    }
+
+    public NodeInfo lookup(InetSocketAddress address) {
+        return byAddress.get(address);
+    }
+
+    public NodeInfo intern(InetSocketAddress address) {
+        NodeInfo peer = byAddress.get(address);
+        return (peer != null) ? peer : register(address);
+    }
+
+    public NodeInfo intern(InetAddress ip, int port) {
+        return intern(new InetSocketAddress(ip, port));
+    }
+
+    public NodeInfo intern(NodeInfo peer) {
+        if (view.isInterned(peer)) return peer;
+        return intern(peer.getSocketAddress());
+    }
+
+    public int size() {
+        return view.limit;
+    }
+
+    public NodeInfo getPeer(int handle) {
+        return view.peers[handle];
+    }
+
+    public PeerState getState(NodeInfo peer) {
+        View current = view;
+        if (current.isInterned(peer)) return current.states[peer.getHandle()];
+        return view.states[intern(peer.getSocketAddress()).getHandle()];
+    }
+
+    public synchronized PeerState release(NodeInfo peer) {
+        View current = view;
+        if (!current.isInterned(peer)) return null;
+
+        int handle = peer.getHandle();
+        PeerState previous = current.states[handle];
+        releasedSeq = Math.max(releasedSeq, previous.getSeqCounter().peekCounter());
+        byAddress.remove(peer.getSocketAddress(), peer);
+
+        NodeInfo[] peers = current.peers.clone();
+        PeerState[] states = current.states.clone();
+        int[] playerIdsByHandle = current.playerIdsByHandle.clone();
+        int playerId = playerIdsByHandle[handle];
+        peers[handle] = null;
+        states[handle] = null;
+        playerIdsByHandle[handle] = NONE;
+        view = current.with(peers, states, playerIdsByHandle).withoutPlayer(playerId);
+
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+        }
+        freeHandles[freeCount++] = handle;
+        return previous;
+    }
+
+    public synchronized void bindPlayer(int playerId, NodeInfo peer) {
+        if (playerId < 0) return;
+
+        int handle = intern(peer).getHandle();
+        View current = view;
+        int[] playerIdsByHandle = current.playerIdsByHandle.clone();
+
+        int index = Arrays.binarySearch(current.playerIds, playerId);
+        if (index >= 0) {
+            playerIdsByHandle[current.playerHandles[index]] = NONE;
+        }
+        View next = current.withoutPlayer(playerId);
+        if (playerIdsByHandle[handle] != NONE) {
+            next = next.withoutPlayer(playerIdsByHandle[handle]);
+        }
+
+        playerIdsByHandle[handle] = playerId;
+        view = next.with(next.peers, next.states, playerIdsByHandle).withPlayer(playerId, handle);
+    }
+
+    public synchronized void unbindPlayer(int playerId) {
+        View current = view;
+        int index = Arrays.binarySearch(current.playerIds, playerId);
+        if (index < 0) return;
+
+        int[] playerIdsByHandle = current.playerIdsByHandle.clone();
+        playerIdsByHandle[current.playerHandles[index]] = NONE;
+        view = current.with(current.peers, current.states, playerIdsByHandle).withoutPlayer(playerId);
+    }
+
+    public NodeInfo getPlayerPeer(int playerId) {
+        View current = view;
+        int index = Arrays.binarySearch(current.playerIds, playerId);
+        return (index >= 0) ? current.peers[current.playerHandles[index]] : null;
+    }
+
+    public int getPlayerId(NodeInfo peer) {
+        if (peer == null) return NONE;
+
+        View current = view;
+        if (current.isInterned(peer)) return current.playerIdsByHandle[peer.getHandle()];
+        return view.playerIdsByHandle[intern(peer.getSocketAddress()).getHandle()];
+    }
+
+    public boolean hasPlayer(int playerId) {
+        return getPlayerPeer(playerId) != null;
+    }
+
+    public int[] getPlayerIds() {
+        return view.playerIds;
+    }
+
+    private synchronized NodeInfo register(InetSocketAddress address) {
+        NodeInfo peer = byAddress.get(address);
+        if (peer != null) return peer;
+
+        View current = view;
+        NodeInfo[] peers = current.peers;
+        PeerState[] states = current.states;
+        int[] playerIdsByHandle = current.playerIdsByHandle;
+        int limit = current.limit;
+
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            handle = limit++;
+        }
+
+        if (handle >= peers.length) {
+            int capacity = peers.length * 2;
+            peers = Arrays.copyOf(peers, capacity);
+            states = Arrays.copyOf(states, capacity);
+            playerIdsByHandle = grow(playerIdsByHandle, capacity);
+        } else {
+            peers = peers.clone();
+            states = states.clone();
+        }
+
+        peer = new NodeInfo(address.getAddress(), address.getPort(), handle);
+        peers[handle] = peer;
+        states[handle] = stateFactory.apply(new MessageCounter(releasedSeq));
+
+        view = new View(peers, states, playerIdsByHandle, limit, current.playerIds, current.playerHandles);
+        byAddress.put(address, peer);
+        return peer;
+    }
+
+    private static int[] filled(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, NONE);
+        return array;
+    }
+
+    private static int[] grow(int[] array, int minLength) {
+        int[] grown = filled(Math.max(minLength, array.length * 2));
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static final class View {
+        private final NodeInfo[] peers;
+        private final PeerState[] states;
+        private final int[] playerIdsByHandle;
+        private final int limit;
+        private final int[] playerIds;
+        private final int[] playerHandles;
+
+        private View(NodeInfo[] peers, PeerState[] states, int[] playerIdsByHandle, int limit,
+                     int[] playerIds, int[] playerHandles) {
+            this.peers = peers;
+            this.states = states;
+            this.playerIdsByHandle = playerIdsByHandle;
+            this.limit = limit;
+            this.playerIds = playerIds;
+            this.playerHandles = playerHandles;
+        }
+
+        private boolean isInterned(NodeInfo peer) {
+            int handle = peer.getHandle();
+            return handle >= 0 && handle < limit && peers[handle] == peer;
+        }
+
+        private View with(NodeInfo[] peers, PeerState[] states, int[] playerIdsByHandle) {
+            return new View(peers, states, playerIdsByHandle, limit, playerIds, playerHandles);
+        }
+
+        private View withPlayer(int playerId, int handle) {
+            int index = -Arrays.binarySearch(playerIds, playerId) - 1;
+            int[] ids = new int[playerIds.length + 1];
+            int[] handles = new int[playerHandles.length + 1];
+
+            System.arraycopy(playerIds, 0, ids, 0, index);
+            System.arraycopy(playerHandles, 0, handles, 0, index);
+            ids[index] = playerId;
+            handles[index] = handle;
+            System.arraycopy(playerIds, index, ids, index + 1, playerIds.length - index);
+            System.arraycopy(playerHandles, index, handles, index + 1, playerHandles.length - index);
+
+            return new View(peers, states, playerIdsByHandle, limit, ids, handles);
+        }
+
+        private View withoutPlayer(int playerId) {
+            int index = Arrays.binarySearch(playerIds, playerId);
+            if (index < 0) return this;
+
+            int[] ids = new int[playerIds.length - 1];
+            int[] handles = new int[playerHandles.length - 1];
+
+            System.arraycopy(playerIds, 0, ids, 0, index);
+            System.arraycopy(playerHandles, 0, handles, 0, index);
+            System.arraycopy(playerIds, index + 1, ids, index, ids.length - index);
+            System.arraycopy(playerHandles, index + 1, handles, index, handles.length - index);
+
+            return new View(peers, states, playerIdsByHandle, limit, ids, handles);
+        }
+    }
+}
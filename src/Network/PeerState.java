@@ -0,0 +1,132 @@
+package Network;
+
+import Protobuf.SnakesProto;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PeerState {
+    private final ConcurrentHashMap<Long, OutgoingMessage> outbox = new ConcurrentHashMap<>();
+    private final ReplayWindow replayWindow = new ReplayWindow();
+    private final MessageCounter seqCounter;
+    private final AtomicBoolean pendingAck = new AtomicBoolean(false);
+    private final StateRateController stateRate = new StateRateController();
+    private final SentStateLog sentStates = new SentStateLog(stateRate);
+    private final RttEstimator rttEstimator;
+
+    private volatile SnakesProto.NodeRole role;
+    private volatile boolean extensionsSupported = false;
+    private int ackedStateOrder = -1;
+    private int statesSinceKeyframe = 0;
+    private volatile long lastStateSentNanos = 0;
+    private ParityEncoder parityEncoder;
+    private long[] unackedSeqs = new long[8];
+    private int unackedCount = 0;
+
+    public PeerState(RttEstimator rttEstimator, MessageCounter seqCounter) {
+        this.rttEstimator = rttEstimator;
+        this.seqCounter = seqCounter;
+    }
+
+    public ConcurrentHashMap<Long, OutgoingMessage> getOutbox() {
+        return outbox;
+    }
+
+    public Map<Long, OutgoingMessage> takeOutbox() {
+        Map<Long, OutgoingMessage> messages = new HashMap<>(outbox);
+        outbox.clear();
+        return messages;
+    }
+
+    public ReplayWindow getReplayWindow() {
+        return replayWindow;
+    }
+
+    public long nextSeq() {
+        return seqCounter.getCounter();
+    }
+
+    public MessageCounter getSeqCounter() {
+        return seqCounter;
+    }
+
+    public AtomicBoolean getPendingAck() {
+        return pendingAck;
+    }
+
+    public synchronized void addUnackedSeq(long msgSeq) {
+        if (unackedCount == unackedSeqs.length) {
+            unackedSeqs = Arrays.copyOf(unackedSeqs, unackedSeqs.length * 2);
+        }
+        unackedSeqs[unackedCount++] = msgSeq;
+    }
+
+    public synchronized long[] takeUnackedSeqs() {
+        long[] seqs = Arrays.copyOf(unackedSeqs, unackedCount);
+        unackedCount = 0;
+        return seqs;
+    }
+
+    public SentStateLog getSentStates() {
+        return sentStates;
+    }
+
+    public StateRateController getStateRate() {
+        return stateRate;
+    }
+
+    public RttEstimator getRttEstimator() {
+        return rttEstimator;
+    }
+
+    public SnakesProto.NodeRole getRole() {
+        return role;
+    }
+
+    public void setRole(SnakesProto.NodeRole role) {
+        this.role = role;
+    }
+
+    public boolean supportsExtensions() {
+        return extensionsSupported;
+    }
+
+    public void setExtensionsSupported() {
+        extensionsSupported = true;
+    }
+
+    public synchronized int getAckedStateOrder() {
+        return ackedStateOrder;
+    }
+
+    public synchronized void mergeAckedStateOrder(int stateOrder) {
+        ackedStateOrder = Math.max(ackedStateOrder, stateOrder);
+    }
+
+    public synchronized void clearAckedStateOrder() {
+        ackedStateOrder = -1;
+    }
+
+    public synchronized int getStatesSinceKeyframe() {
+        return statesSinceKeyframe;
+    }
+
+    public synchronized void onStateSent(boolean keyframe) {
+        statesSinceKeyframe = keyframe ? 0 : statesSinceKeyframe + 1;
+        lastStateSentNanos = System.nanoTime();
+    }
+
+    public long getLastStateSentNanos() {
+        return lastStateSentNanos;
+    }
+
+    public synchronized ParityEncoder getParityEncoder(int groupSize) {
+        if (parityEncoder == null) {
+            parityEncoder = new ParityEncoder(groupSize);
+        }
+        return parityEncoder;
+    }
+}
@@ -0,0 +1,95 @@
+package Network;
+
+import java.util.concurrent.TimeUnit;
+
+public class PhiAccrualDetector {
+    private static final int MIN_SAMPLES = 4;
+    private static final long MIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final long[] intervals;
+    private final double minStdDevNanos;
+    private final long acceptablePauseNanos;
+
+    private int count = 0;
+    private int next = 0;
+    private double sum = 0;
+    private double sumSquares = 0;
+    private long lastHeartbeatNanos;
+
+    public PhiAccrualDetector(int windowSize, long minStdDevMs, long acceptablePauseMs, long nowNanos) {
+        this.intervals = new long[windowSize];
+        this.minStdDevNanos = TimeUnit.MILLISECONDS.toNanos(minStdDevMs);
+        this.acceptablePauseNanos = TimeUnit.MILLISECONDS.toNanos(acceptablePauseMs);
+        this.lastHeartbeatNanos = nowNanos;
+    }
+
+    public synchronized void heartbeat(long nowNanos) {
+        long interval = nowNanos - lastHeartbeatNanos;
+        if (interval < MIN_INTERVAL_NANOS) return;
+
+        lastHeartbeatNanos = nowNanos;
+
+        if (count == intervals.length) {
+            long oldest = intervals[next];
+            sum -= oldest;
+            sumSquares -= (double) oldest * oldest;
+        } else {
+            ++count;
+        }
+
+        intervals[next] = interval;
+        next = (next + 1) % intervals.length;
+        sum += interval;
+        sumSquares += (double) interval * interval;
+    }
+
+    public synchronized boolean isReady() {
+        return count >= MIN_SAMPLES;
+    }
+
+    public synchronized long getLastHeartbeatNanos() {
+        return lastHeartbeatNanos;
+    }
+
+    public synchronized double phi(long nowNanos) {
+        return phiAfter(nowNanos - lastHeartbeatNanos);
+    }
+
+    public synchronized long suspicionTimeoutNanos(double threshold) {
+        long low = 0;
+        long high = (long) (mean() + 64 * stdDev());
+
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (phiAfter(middle) < threshold) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    private double phiAfter(long idleNanos) {
+        double y = (idleNanos - mean()) / stdDev();
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+
+        if (idleNanos > mean()) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    private double mean() {
+        return ((count == 0) ? 0 : sum / count) + acceptablePauseNanos;
+    }
+
+    private double stdDev() {
+        if (count == 0) return minStdDevNanos;
+
+        double mean = sum / count;
+        double variance = Math.max(0, sumSquares / count - mean * mean);
+        return Math.max(minStdDevNanos, Math.sqrt(variance));
+    }
+}
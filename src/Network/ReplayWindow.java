@@ -0,0 +1,80 @@
+package Network;
+
+import java.util.Arrays;
+
+public class ReplayWindow {
+    public static final int WINDOW_SIZE = 2048;
+
+    private final long[] bitmap = new long[WINDOW_SIZE / Long.SIZE];
+    private long highest = -1;
+    private long cumulative = 0;
+
+    private volatile AckInfo ackInfo;
+
+    public boolean contains(long seq) {
+        if (highest < 0 || seq > highest) return false;
+        if (highest - seq >= WINDOW_SIZE) return true;
+
+        return (bitmap[index(seq)] & bit(seq)) != 0;
+    }
+
+    public void add(long seq) {
+        if (seq > highest) {
+            if (highest < 0 || seq - highest >= WINDOW_SIZE) {
+                Arrays.fill(bitmap, 0);
+            } else {
+                clearRange(highest + 1, seq);
+            }
+            highest = seq;
+        } else if (highest - seq >= WINDOW_SIZE) {
+            return;
+        }
+
+        bitmap[index(seq)] |= bit(seq);
+
+        cumulative = Math.max(cumulative, highest - WINDOW_SIZE);
+        while (cumulative < highest && contains(cumulative + 1)) {
+            ++cumulative;
+        }
+
+        ackInfo = new AckInfo(cumulative, highest, sackBits());
+    }
+
+    public AckInfo getAckInfo() {
+        return ackInfo;
+    }
+
+    private long sackBits() {
+        long bits = 0;
+        for (int i = 1; i <= AckInfo.SACK_BITS && highest - i > cumulative; ++i) {
+            if (contains(highest - i)) {
+                bits |= 1L << (i - 1);
+            }
+        }
+        return bits;
+    }
+
+    public long getHighest() {
+        return highest;
+    }
+
+    private void clearRange(long from, long to) {
+        while (from < to) {
+            if ((from & (Long.SIZE - 1)) == 0 && to - from >= Long.SIZE) {
+                bitmap[index(from)] = 0;
+                from += Long.SIZE;
+            } else {
+                bitmap[index(from)] &= ~bit(from);
+                ++from;
+            }
+        }
+    }
+
+    private static int index(long seq) {
+        return (int) ((seq / Long.SIZE) % (WINDOW_SIZE / Long.SIZE));
+    }
+
+    private static long bit(long seq) {
+        return 1L << (seq & (Long.SIZE - 1));
+    }
+}
@@ -0,0 +1,48 @@
+package Network;
+
+import java.util.concurrent.TimeUnit;
+
+public class RttEstimator {
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private final long minRtoNanos;
+    private final long maxRtoNanos;
+
+    private boolean hasSample = false;
+    private long srttNanos;
+    private long rttvarNanos;
+    private long rtoNanos;
+
+    public RttEstimator(long initialRtoMs, long minRtoMs, long maxRtoMs) {
+        this.minRtoNanos = TimeUnit.MILLISECONDS.toNanos(minRtoMs);
+        this.maxRtoNanos = TimeUnit.MILLISECONDS.toNanos(maxRtoMs);
+        this.rtoNanos = clamp(TimeUnit.MILLISECONDS.toNanos(initialRtoMs));
+    }
+
+    public synchronized void addSample(long rttNanos) {
+        if (!hasSample) {
+            srttNanos = rttNanos;
+            rttvarNanos = rttNanos / 2;
+            hasSample = true;
+        } else {
+            rttvarNanos = (3 * rttvarNanos + Math.abs(srttNanos - rttNanos)) / 4;
+            srttNanos = (7 * srttNanos + rttNanos) / 8;
+        }
+
+        rtoNanos = clamp(srttNanos + Math.max(minRtoNanos, 4 * rttvarNanos));
+    }
+
+    public synchronized long getRtoMs(int retransmits) {
+        long backoff = rtoNanos << Math.min(retransmits, MAX_BACKOFF_SHIFT);
+        return TimeUnit.NANOSECONDS.toMillis(clamp(backoff));
+    }
+
+    public synchronized long getSrttMs() {
+        return TimeUnit.NANOSECONDS.toMillis(srttNanos);
+    }
+
+    private long clamp(long nanos) {
+        if (nanos < 0 || nanos > maxRtoNanos) return maxRtoNanos;
+        return Math.max(nanos, minRtoNanos);
+    }
+}
@@ -0,0 +1,62 @@
+package Network;
+
+import java.util.Arrays;
+
+public class SentStateLog {
+    private static final int CAPACITY = AckInfo.SACK_BITS;
+    private static final long EMPTY = -1;
+
+    private final long[] msgSeqs = new long[CAPACITY];
+    private final int[] stateOrders = new int[CAPACITY];
+    private final long[] sentNanos = new long[CAPACITY];
+    private final StateRateController rateController;
+    private int next = 0;
+
+    public SentStateLog(StateRateController rateController) {
+        this.rateController = rateController;
+        Arrays.fill(msgSeqs, EMPTY);
+    }
+
+    public synchronized void record(long msgSeq, int stateOrder) {
+        msgSeqs[next] = msgSeq;
+        stateOrders[next] = stateOrder;
+        sentNanos[next] = System.nanoTime();
+        next = (next + 1) % CAPACITY;
+    }
+
+    public synchronized int takeAcked(AckInfo ackInfo) {
+        int highestOrder = -1;
+        long now = System.nanoTime();
+
+        for (int i = 0; i < CAPACITY; ++i) {
+            if (msgSeqs[i] == EMPTY) continue;
+
+            if (ackInfo.acknowledges(msgSeqs[i])) {
+                highestOrder = Math.max(highestOrder, stateOrders[i]);
+                rateController.onStateAcked(stateOrders[i], now - sentNanos[i]);
+                msgSeqs[i] = EMPTY;
+            } else if (msgSeqs[i] < ackInfo.getHighest()) {
+                rateController.onStateLost();
+                msgSeqs[i] = EMPTY;
+            }
+        }
+
+        return highestOrder;
+    }
+
+    public synchronized int takeAcked(long msgSeq) {
+        for (int i = 0; i < CAPACITY; ++i) {
+            if (msgSeqs[i] == msgSeq) {
+                rateController.onStateAcked(stateOrders[i], System.nanoTime() - sentNanos[i]);
+                msgSeqs[i] = EMPTY;
+                return stateOrders[i];
+            }
+        }
+
+        return -1;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(msgSeqs, EMPTY);
+    }
+}
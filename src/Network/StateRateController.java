@@ -0,0 +1,60 @@
+package Network;
+
+public class StateRateController {
+    public static final int MAX_INTERVAL = 4;
+
+    private static final int RECOVERY_STATES = 8;
+    private static final int BACKLOG_SLACK_TICKS = 2;
+    private static final double MAX_LOSS_RATE = 0.25;
+    private static final double LOSS_GAIN = 0.125;
+
+    private int interval = 1;
+    private int ticksSinceState = 0;
+    private int goodStates = 0;
+    private int firstStateOrder = -1;
+    private int ackedStateOrder = -1;
+    private int decreasedAtOrder = -1;
+    private double lossRate = 0;
+    private long srttNanos = 0;
+
+    public synchronized void onStateAcked(int stateOrder, long rttNanos) {
+        ackedStateOrder = Math.max(ackedStateOrder, stateOrder);
+        lossRate -= lossRate * LOSS_GAIN;
+        srttNanos = (srttNanos == 0) ? rttNanos : (7 * srttNanos + rttNanos) / 8;
+    }
+
+    public synchronized void onStateLost() {
+        lossRate += (1 - lossRate) * LOSS_GAIN;
+    }
+
+    public synchronized boolean shouldSend(int stateOrder, long stateDelayNanos, long ackIntervalNanos) {
+        if (++ticksSinceState < interval) return false;
+        ticksSinceState = 0;
+
+        if (firstStateOrder < 0) {
+            firstStateOrder = stateOrder;
+        }
+
+        long feedbackTicks = (srttNanos + ackIntervalNanos + stateDelayNanos - 1) / stateDelayNanos;
+        int backlog = stateOrder - Math.max(ackedStateOrder, firstStateOrder);
+        boolean behind = backlog > feedbackTicks + interval + BACKLOG_SLACK_TICKS || lossRate > MAX_LOSS_RATE;
+
+        if (behind) {
+            goodStates = 0;
+            if (interval < MAX_INTERVAL
+                    && (decreasedAtOrder < 0 || stateOrder - decreasedAtOrder > feedbackTicks + BACKLOG_SLACK_TICKS)) {
+                interval = Math.min(MAX_INTERVAL, 2 * interval);
+                decreasedAtOrder = stateOrder;
+            }
+        } else if (interval > 1 && ++goodStates >= RECOVERY_STATES) {
+            --interval;
+            goodStates = 0;
+        }
+
+        return true;
+    }
+
+    public synchronized int getInterval() {
+        return interval;
+    }
+}
@@ -0,0 +1,118 @@
+package Network;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+public class TimingWheel {
+    private final String name;
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<WheelTimeout>[] slots;
+    private final ConcurrentLinkedQueue<WheelTimeout> pending = new ConcurrentLinkedQueue<>();
+
+    private Thread thread;
+    private volatile boolean running = false;
+    private volatile long startNanos;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(String name, long tickMs, int wheelSize) {
+        if (Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two: " + wheelSize);
+        }
+
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMs);
+        this.mask = wheelSize - 1;
+        this.slots = (ArrayDeque<WheelTimeout>[]) new ArrayDeque<?>[wheelSize];
+
+        for (int i = 0; i < wheelSize; ++i) {
+            slots[i] = new ArrayDeque<>();
+        }
+    }
+
+    public void start() {
+        synchronized (this) {
+            if (running) return;
+
+            startNanos = System.nanoTime();
+            running = true;
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        synchronized (this) {
+            running = false;
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+        }
+    }
+
+    public WheelTimeout schedule(long delayMs, Runnable task) {
+        WheelTimeout timeout = new WheelTimeout(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMs), task);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    public long getTickMs() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    private void run() {
+        long tick = 0;
+
+        while (running && !Thread.currentThread().isInterrupted()) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long now = System.nanoTime();
+
+            if (now < deadline) {
+                LockSupport.parkNanos(deadline - now);
+                continue;
+            }
+
+            transferPending(tick);
+            expire(slots[(int) (tick & mask)]);
+            ++tick;
+        }
+    }
+
+    private void transferPending(long tick) {
+        WheelTimeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+
+            long calculated = (timeout.getDeadlineNanos() - startNanos) / tickNanos;
+            timeout.setRemainingRounds(Math.max(0, (calculated - tick) / slots.length));
+
+            long ticks = Math.max(calculated, tick);
+            slots[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<WheelTimeout> slot) {
+        Iterator<WheelTimeout> it = slot.iterator();
+        while (it.hasNext()) {
+            WheelTimeout timeout = it.next();
+
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.getRemainingRounds() > 0) {
+                timeout.setRemainingRounds(timeout.getRemainingRounds() - 1);
+            } else {
+                it.remove();
+                try {
+                    timeout.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -2,63 +2,228 @@ package Network;
 
 import java.io.IOException;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class UnicastConnection {
 
-    public static final int DEFAULT_SOCKET_TIMEOUT = 1000;
-    public static final int DEFAULT_PACKAGE_SIZE = 1024;
+    public static final int MAX_DATAGRAM_SIZE = 65507;
 
-    private DatagramSocket datagramSocket;
-    private int socketTimeout;
-    private final int maxPackageSize;
+    private static final int POOLED_BUFFER_SIZE = 16384;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final int MAX_READS_PER_WAKEUP = 64;
+    private static final long PACING_BYTES_PER_SECOND = 1024 * 1024;
+    private static final long PACING_BURST_BYTES = 32 * 1024;
 
-    public UnicastConnection() {
-        this.socketTimeout = DEFAULT_SOCKET_TIMEOUT;
-        this.maxPackageSize = DEFAULT_PACKAGE_SIZE;
+    private DatagramChannel channel;
+    private Selector selector;
+    private SelectionKey key;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+    private final ByteBufferPool bufferPool = new ByteBufferPool(POOLED_BUFFER_SIZE, MAX_POOLED_BUFFERS);
+    private final ConcurrentLinkedQueue<OutboundPacket> writeQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private final Set<InetSocketAddress> batchingPeers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<InetSocketAddress> removedPeers = new ConcurrentLinkedQueue<>();
+
+    private final OutboundPipeline pipeline = new OutboundPipeline(PACING_BYTES_PER_SECOND, PACING_BURST_BYTES,
+            bufferPool);
+    private OutboundPacket blockedPacket;
+
+    private PacketHandler handler;
+    private Thread ioThread;
+    private volatile boolean running = false;
 
+    public UnicastConnection() {
         try {
-            datagramSocket = new DatagramSocket();
-            datagramSocket.setSoTimeout(socketTimeout);
-        } catch (SocketException e) {
-            System.err.println("Cannot create socket for port " + datagramSocket.getPort() + ": " + e.getMessage());
+            selector = Selector.open();
+            channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            channel.bind(new InetSocketAddress(0));
+            key = channel.register(selector, SelectionKey.OP_READ);
+        } catch (IOException e) {
+            System.err.println("Cannot create datagram channel: " + e.getMessage());
         }
     }
 
-    public void sendPacket(DatagramPacket packet) {
-        try {
-            datagramSocket.send(packet);
-        } catch (IOException e) {
-            System.err.println("Cannot send packet: " + e.getMessage());
+    public void start(PacketHandler handler) {
+        synchronized (this) {
+            if (running) return;
+
+            this.handler = handler;
+            running = true;
+            ioThread = new Thread(this::run, "unicast-io");
+            ioThread.setDaemon(true);
+            ioThread.start();
         }
     }
 
-    public DatagramPacket receivePacket() {
-        DatagramPacket receivePacket = new DatagramPacket(new byte[DEFAULT_PACKAGE_SIZE], DEFAULT_PACKAGE_SIZE);
-        try {
-            datagramSocket.receive(receivePacket);
-            return receivePacket;
-        } catch (IOException e) {
-            return null;
+    public void close() {
+        synchronized (this) {
+            running = false;
+            selector.wakeup();
         }
     }
 
-    public InetAddress getLocalAddress() {
-        return datagramSocket.getLocalAddress();
+    public void sendPacket(byte[] data, int length, byte[] trailer, NodeInfo receiver, int priority) {
+        ByteBuffer buffer = bufferPool.acquire(length + trailer.length);
+        buffer.put(data, 0, length).put(trailer).flip();
+
+        enqueue(buffer, receiver, priority);
     }
 
-    public int getLocalPort() {
-        return datagramSocket.getLocalPort();
+    public void sendPacket(OutgoingMessage message, byte[] trailer, NodeInfo receiver, int priority) {
+        ByteBuffer buffer = bufferPool.acquire(message.getSize() + trailer.length);
+        message.writeTo(buffer);
+        buffer.put(trailer).flip();
+
+        enqueue(buffer, receiver, priority);
     }
 
-    public int getMaxPackageSize() {
-        return maxPackageSize;
+    public void sendUnbatched(byte[] data, NodeInfo receiver, int priority) {
+        ByteBuffer buffer = bufferPool.acquire(data.length);
+        buffer.put(data).flip();
+
+        enqueue(new OutboundPacket(buffer, receiver.getSocketAddress(), priority, false));
+    }
+
+    public void sendFragment(OutgoingMessage message, long msgSeq, int index, int count, byte[] trailer,
+                             NodeInfo receiver, int priority) {
+        int offset = index * Fragment.FRAGMENT_SIZE;
+        int length = Math.min(Fragment.FRAGMENT_SIZE, message.getSize() - offset);
+        byte[] header = Fragment.header(msgSeq, index, count, length);
+
+        ByteBuffer buffer = bufferPool.acquire(header.length + length + trailer.length);
+        buffer.put(header);
+        message.writeRange(buffer, offset, length);
+        buffer.put(trailer).flip();
+
+        enqueue(buffer, receiver, priority);
+    }
+
+    private void enqueue(ByteBuffer buffer, NodeInfo receiver, int priority) {
+        InetSocketAddress address = receiver.getSocketAddress();
+        enqueue(new OutboundPacket(buffer, address, priority, batchingPeers.contains(address)));
+    }
+
+    public void setBatching(NodeInfo peer, boolean enabled) {
+        if (enabled) {
+            batchingPeers.add(peer.getSocketAddress());
+        } else {
+            batchingPeers.remove(peer.getSocketAddress());
+        }
+    }
+
+    public void removePeer(NodeInfo peer) {
+        setBatching(peer, false);
+        removedPeers.add(peer.getSocketAddress());
+    }
+
+    private void enqueue(OutboundPacket packet) {
+        writeQueue.add(packet);
+
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
     }
 
-    public void setSoTimeout(int timeout) {
+    private void run() {
+        while (running) {
+            try {
+                long delayMs = (blockedPacket != null) ? -1 : pipeline.getDelayMs(System.nanoTime());
+                if (delayMs >= 0) {
+                    selector.select(delayMs);
+                } else {
+                    selector.select();
+                }
+                selector.selectedKeys().clear();
+
+                if (!running) break;
+
+                readPackets();
+                writePackets();
+            } catch (IOException e) {
+                System.err.println("Unicast I/O error: " + e.getMessage());
+            } catch (ClosedSelectorException e) {
+                break;
+            }
+        }
+
         try {
-            datagramSocket.setSoTimeout(timeout);
-        } catch (SocketException e) {
+            channel.close();
+            selector.close();
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    private void readPackets() throws IOException {
+        for (int i = 0; i < MAX_READS_PER_WAKEUP; ++i) {
+            readBuffer.clear();
+            SocketAddress address = channel.receive(readBuffer);
+            if (address == null) return;
+
+            readBuffer.flip();
+            try {
+                handler.onPacket(readBuffer, (InetSocketAddress) address);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void writePackets() {
+        wakeupPending.set(false);
+
+        long now = System.nanoTime();
+        OutboundPacket packet;
+        while ((packet = writeQueue.poll()) != null) {
+            pipeline.add(packet, now);
+        }
+
+        InetSocketAddress removed;
+        while ((removed = removedPeers.poll()) != null) {
+            pipeline.removePeer(removed);
+        }
+
+        while (true) {
+            packet = (blockedPacket != null) ? blockedPacket : pipeline.next(now);
+            if (packet == null) break;
+
+            try {
+                if (channel.send(packet.getBuffer(), packet.getAddress()) == 0) {
+                    blockedPacket = packet;
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot send packet: " + e.getMessage());
+            }
+
+            blockedPacket = null;
+            bufferPool.release(packet.getBuffer());
+        }
+
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    public int getMaxQueueDepth(int priority) {
+        return pipeline.getMaxQueueDepth(priority);
+    }
+
+    public int getQueueDepth(int priority) {
+        return pipeline.getQueueDepth(priority);
+    }
+
+    public InetAddress getLocalAddress() {
+        return channel.socket().getLocalAddress();
+    }
+
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+}
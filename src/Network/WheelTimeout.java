@@ -0,0 +1,40 @@
+package Network;
+
+public class WheelTimeout {
+    private final long deadlineNanos;
+    private final Runnable task;
+
+    private long remainingRounds;
+    private volatile boolean cancelled = false;
+
+    public WheelTimeout(long deadlineNanos, Runnable task) {
+        this.deadlineNanos = deadlineNanos;
+        this.task = task;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    long getRemainingRounds() {
+        return remainingRounds;
+    }
+
+    void setRemainingRounds(long remainingRounds) {
+        this.remainingRounds = remainingRounds;
+    }
+
+    void run() {
+        if (!cancelled) {
+            task.run();
+        }
+    }
+}